@@ -0,0 +1,300 @@
+/*
+ * Copyright 2022. Werner Elsler
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.wernz0r.nestedsets4jooq.benchmark;
+
+import io.github.wernz0r.nestedsets4jooq.dao.CategoryNestedSetDao;
+import io.github.wernz0r.nestedsets4jooq.model.CategoryNode;
+import org.jooq.BatchBindStep;
+import org.jooq.Configuration;
+import org.jooq.DSLContext;
+import org.jooq.SQLDialect;
+import org.jooq.conf.Settings;
+import org.jooq.impl.DSL;
+import org.jooq.impl.DefaultConfiguration;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static io.github.wernz0r.nestedsets4jooq.test.tables.Category.CATEGORY;
+
+/**
+ * Measures the operations of the nested set dao on generated trees of different sizes and shapes, using an in-memory
+ * H2 database. Every invocation runs in a transaction which is rolled back afterwards, so all invocations work on the
+ * same tree.
+ * <p>
+ * Run with {@code mvn -Pbenchmark test-compile exec:exec}. JMH options can be passed with the jmh.args property, e.g.
+ * {@code -Djmh.args="-p size=10000 -p shape=BALANCED NestedSetBenchmark.insert"}. The parameter singleStatementShift
+ * compares shifting the left and right values by a single statement with the former two statements.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NestedSetBenchmark {
+
+    /**
+     * Number of children of each node in a balanced tree
+     */
+    private static final int FAN_OUT = 10;
+
+    /**
+     * Shape of the generated tree
+     */
+    public enum Shape {
+        /**
+         * All nodes are children of the root
+         */
+        WIDE,
+        /**
+         * Every node is the only child of its predecessor
+         */
+        DEEP,
+        /**
+         * Every node has up to ten children
+         */
+        BALANCED
+    }
+
+    @Param({"10000", "100000", "1000000"})
+    public int size;
+
+    @Param({"WIDE", "DEEP", "BALANCED"})
+    public Shape shape;
+
+    /**
+     * Whether gaps are opened and closed by a single UPDATE or by one UPDATE for the left and one for the right values
+     */
+    @Param({"true", "false"})
+    public boolean singleStatementShift;
+
+    private Connection connection;
+
+    private CategoryNestedSetDao dao;
+
+    private CategoryNode root;
+
+    private CategoryNode first;
+
+    private CategoryNode middle;
+
+    private CategoryNode last;
+
+    @Setup(Level.Trial)
+    public void createTree() throws SQLException, IOException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:benchmark", "sa", "");
+        connection.setAutoCommit(false);
+
+        // statement logging would dominate the measured times
+        final Configuration configuration = new DefaultConfiguration()
+                .set(connection)
+                .set(SQLDialect.H2)
+                .set(new Settings().withExecuteLogging(false));
+        final DSLContext ctx = DSL.using(configuration);
+
+        try (InputStream schema = getClass().getResourceAsStream("/schema.sql")) {
+            ctx.execute(new String(schema.readAllBytes(), StandardCharsets.UTF_8));
+        }
+
+        // the identity column of the fresh table numbers the nodes from 1 in insertion order
+        // a batch keeps its bind values after the execution, so a new one is started for every chunk
+        BatchBindStep batch = null;
+
+        for (long id = 1; id <= size; id++) {
+            if (batch == null) {
+                batch = ctx.batch(ctx.insertInto(CATEGORY, CATEGORY.NAME, CATEGORY.PARENT_ID)
+                        .values((String) null, null));
+            }
+            batch.bind("node" + id, parentOf(id));
+
+            if (id % 10000 == 0 || id == size) {
+                batch.execute();
+                batch = null;
+            }
+        }
+
+        final boolean singleStatement = singleStatementShift;
+
+        dao = new CategoryNestedSetDao(configuration) {
+            @Override
+            protected boolean isSingleStatementShift() {
+                return singleStatement;
+            }
+        };
+        dao.rebuild(CATEGORY.PARENT_ID, CATEGORY.ID);
+        connection.commit();
+
+        root = node(1L);
+        first = node(2L);
+        middle = node(size / 2L);
+        last = node((long) size);
+    }
+
+    @TearDown(Level.Invocation)
+    public void rollback() throws SQLException {
+        connection.rollback();
+    }
+
+    @TearDown(Level.Trial)
+    public void dropTree() throws SQLException {
+        // the in-memory database is dropped together with its last connection
+        connection.close();
+    }
+
+    /**
+     * Returns the ID of the parent of a node, depending on the shape of the tree.
+     *
+     * @param id ID of the node
+     * @return ID of the parent node, null for the root
+     */
+    private Long parentOf(long id) {
+        if (id == 1) {
+            return null;
+        }
+
+        switch (shape) {
+            case WIDE:
+                return 1L;
+            case DEEP:
+                return id - 1;
+            default:
+                return (id - 2) / FAN_OUT + 1;
+        }
+    }
+
+    /**
+     * Creates a node which only contains an ID.
+     *
+     * @param id ID of the node
+     * @return node
+     */
+    private static CategoryNode node(Long id) {
+        final CategoryNode node = new CategoryNode();
+        node.setId(id);
+        return node;
+    }
+
+    /**
+     * Creates a new node which can be inserted.
+     *
+     * @return node
+     */
+    private static CategoryNode newNode() {
+        final CategoryNode node = new CategoryNode();
+        node.setName("newNode");
+        return node;
+    }
+
+    @Benchmark
+    public void insertAsFirstChildOfRoot() {
+        dao.insertAsFirstChild(root, newNode());
+    }
+
+    @Benchmark
+    public void insertAsLastChildOfRoot() {
+        dao.insertAsLastChild(root, newNode());
+    }
+
+    @Benchmark
+    public void insertAsPrevSiblingInMiddle() {
+        dao.insertAsPrevSibling(middle, newNode());
+    }
+
+    @Benchmark
+    public void insertAsNextSiblingInMiddle() {
+        dao.insertAsNextSibling(middle, newNode());
+    }
+
+    @Benchmark
+    public void insertAsLastChildOfLast() {
+        dao.insertAsLastChild(last, newNode());
+    }
+
+    @Benchmark
+    public void moveAsFirstChild() {
+        dao.moveAsFirstChild(middle, root);
+    }
+
+    @Benchmark
+    public void moveAsLastChild() {
+        dao.moveAsLastChild(middle, root);
+    }
+
+    @Benchmark
+    public void moveAsPrevSibling() {
+        dao.moveAsPrevSibling(middle, first);
+    }
+
+    @Benchmark
+    public void moveAsNextSibling() {
+        dao.moveAsNextSibling(middle, first);
+    }
+
+    @Benchmark
+    public void delete() {
+        dao.delete(middle);
+    }
+
+    @Benchmark
+    public void deleteAll() {
+        final List<CategoryNode> nodes = new ArrayList<>();
+
+        for (long id = size / 10; id < size; id += size / 10) {
+            nodes.add(node(id));
+        }
+        dao.deleteAll(nodes);
+    }
+
+    @Benchmark
+    public List<CategoryNode> getChildren() {
+        return dao.getChildren(root);
+    }
+
+    @Benchmark
+    public List<CategoryNode> getDescendants() {
+        return dao.getDescendants(middle);
+    }
+
+    @Benchmark
+    public List<CategoryNode> getAncestors() {
+        return dao.getAncestors(last);
+    }
+
+    @Benchmark
+    public CategoryNode getParent() {
+        return dao.getParent(last);
+    }
+
+    @Benchmark
+    public boolean hasChildren() {
+        return dao.hasChildren(middle);
+    }
+
+    @Benchmark
+    public boolean isRoot() {
+        return dao.isRoot(middle);
+    }
+}
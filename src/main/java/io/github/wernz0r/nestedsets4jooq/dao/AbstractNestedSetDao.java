@@ -17,12 +17,37 @@
 package io.github.wernz0r.nestedsets4jooq.dao;
 
 import io.github.wernz0r.nestedsets4jooq.exception.NodeNotFoundException;
+import io.github.wernz0r.nestedsets4jooq.lock.LockStrategy;
+import io.github.wernz0r.nestedsets4jooq.lock.LockTarget;
 import io.github.wernz0r.nestedsets4jooq.model.NestedSetNode;
+import io.github.wernz0r.nestedsets4jooq.model.NestedSetTree;
+import io.github.wernz0r.nestedsets4jooq.monitoring.NestedSetMonitor;
+import io.github.wernz0r.nestedsets4jooq.monitoring.OperationStatistics;
 import org.jooq.*;
+import org.jooq.Record;
 import org.jooq.impl.DAOImpl;
 import org.jooq.impl.DSL;
 
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 /**
  * This abstract class contains all relevant functions to handle nested sets.
@@ -36,6 +61,51 @@ public abstract class AbstractNestedSetDao<R extends UpdatableRecord<R>, N exten
         extends DAOImpl<R, N, T>
         implements NestedSetDao<N> {
 
+    /**
+     * Number of rows which are read or written at once by bulk operations.
+     */
+    private static final int BATCH_SIZE = 1000;
+
+    /**
+     * Alias of the table, which is joined to read the values of the node a query refers to.
+     */
+    private static final String NODE_ALIAS = "nested_set_node";
+
+    /**
+     * Alias of the ID of the node a row refers to, when a query reads the relatives of multiple nodes.
+     */
+    private static final String NODE_ID_ALIAS = "nested_set_node_id";
+
+    /**
+     * Alias of the level of the node a sibling is looked up for.
+     */
+    private static final String NODE_LEVEL_ALIAS = "nested_set_node_level";
+
+    /**
+     * Alias of the table, which is joined to read the values of the parent of the node a query refers to.
+     */
+    private static final String PARENT_ALIAS = "nested_set_parent";
+
+    /**
+     * Statistics of the operation which is currently executed by a thread, if it is monitored.
+     */
+    private final ThreadLocal<OperationRecorder> currentOperation = new ThreadLocal<>();
+
+    /**
+     * Configuration of the dao and the configuration derived from it, which counts the executed statements.
+     */
+    private volatile Map.Entry<Configuration, Configuration> monitoredConfiguration;
+
+    /**
+     * Configuration of the innermost transaction which is currently executed by a thread, if it has been opened by
+     * {@link #transactionResult(Supplier)}.
+     */
+    private final ThreadLocal<Configuration> currentTransaction = new ThreadLocal<>();
+
+    private final ThreadLocal<List<Runnable>> afterTransaction = new ThreadLocal<>();
+
+    private final AtomicBoolean indexesChecked = new AtomicBoolean();
+
     /**
      * Constructor
      *
@@ -79,17 +149,200 @@ public abstract class AbstractNestedSetDao<R extends UpdatableRecord<R>, N exten
     public abstract TableField<R, Long> getLevelField();
 
     /**
-     * Adds a node as root. A root always has the left value 1, the right value 2 and the level 0.
+     * Returns TableField for the primary key column of nested set table. By default the field is determined by the
+     * primary key of the table, which must consist of a single column.
+     *
+     * @return TableField which contains the primary key
+     */
+    @SuppressWarnings("unchecked")
+    public TableField<R, T> getIdField() {
+        return (TableField<R, T>) getTable().getPrimaryKey().getFields().get(0);
+    }
+
+    /**
+     * Returns TableField for the column which identifies the tree a node belongs to. If a table contains multiple
+     * trees, every query and every shift is restricted to the tree of the affected node, so operations on different
+     * trees do not interfere with each other. By default no scope is defined and the table contains a single tree.
+     * <p>
+     * Roots must be given a value for the scope before they are inserted, all other nodes inherit the scope of their
+     * parent.
+     *
+     * @return TableField which identifies the tree, or null if the table contains a single tree
+     */
+    public TableField<R, ?> getScopeField() {
+        return null;
+    }
+
+    /**
+     * Returns TableField for the column which marks deleted nodes. If it is defined, deleting a subtree only marks its
+     * nodes as deleted instead of removing them and closing the gap, so a delete only writes the rows of the subtree.
+     * Marked nodes are ignored by all reads and are removed by {@link #compact()}, which closes all accumulated gaps
+     * at once. By default no such column is defined and nodes are removed immediately.
+     *
+     * @return TableField which marks deleted nodes, or null if nodes are removed immediately
+     */
+    public TableField<R, Boolean> getDeletedField() {
+        return null;
+    }
+
+    /**
+     * Returns the number of rows which are fetched at once by streaming reads and bulk operations. Depending on the
+     * JDBC driver the fetch size is only taken into account within a transaction or requires a special value, which
+     * can be returned by overriding this method.
+     *
+     * @return fetch size
+     */
+    protected int getFetchSize() {
+        return BATCH_SIZE;
+    }
+
+    /**
+     * Returns the distance between two consecutive values when nodes are numbered. With the default value of 1 the
+     * tree is numbered densely, so every insert shifts all nodes on the right side of the new node.
+     * <p>
+     * Returning a value greater than 1 enables sparse numbering: new nodes take free values between the existing
+     * left and right values, so most inserts do not touch any other node. Only if there are no free values left, the
+     * smallest enclosing subtree is renumbered.
+     *
+     * @return distance between two consecutive values
+     */
+    protected long getGapSize() {
+        return 1L;
+    }
+
+    /**
+     * Returns true, when the left and right values are shifted by a single statement to open or close a gap. This
+     * halves the number of statements and scans of each insert and delete. Returning false restores the former
+     * behaviour of one statement for the left values and another one for the right values, e.g. to compare both in
+     * a benchmark.
+     *
+     * @return true, when left and right values are shifted together
+     */
+    protected boolean isSingleStatementShift() {
+        return true;
+    }
+
+    /**
+     * Returns true, when the left, right and level values of nodes passed to modifying operations are up to date.
+     * In this case the nodes are not read from the database again, which saves a statement per node. By default the
+     * values are always read from the database.
+     * <p>
+     * Only enable this mode, if the caller can guarantee that the values have not been changed in the meantime, e.g.
+     * by operations on other nodes. Otherwise the tree will be corrupted. If a scope field is defined, nodes without
+     * a scope are always read from the database, as the scope of their tree is unknown.
+     *
+     * @return true, when the values of passed nodes can be trusted
+     */
+    protected boolean isTrustedMode() {
+        return false;
+    }
+
+    /**
+     * Returns true, when the existing indexes of the table are checked before the first operation of the dao. For each
+     * recommended index which is missing, a warning is logged. The check is disabled by default, as it reads the
+     * metadata of the database.
+     *
+     * @return true, when missing indexes are to be reported
+     * @see #checkIndexes()
+     * @see NestedSetIndexes
+     */
+    protected boolean isIndexCheckEnabled() {
+        return false;
+    }
+
+    /**
+     * Logs a warning for each recommended index which is missing in the database. If enabled, this is done before the
+     * first operation of the dao, so the check sees the fully constructed subclass. It can also be called explicitly,
+     * e.g. on startup of the application.
+     *
+     * @see #isIndexCheckEnabled()
+     */
+    public void checkIndexes() {
+        indexesChecked.set(true);
+        NestedSetIndexes.warnIfMissing(this);
+    }
+
+    /**
+     * Returns the monitor, which is notified about every public operation of this dao. The statistics of an operation
+     * contain its duration, the number of executed statements and the number of rows affected by each statement which
+     * shifted existing nodes. By default no statistics are collected.
+     *
+     * @return monitor of the operations
+     * @see io.github.wernz0r.nestedsets4jooq.monitoring.JfrNestedSetMonitor
+     * @see io.github.wernz0r.nestedsets4jooq.monitoring.MicrometerNestedSetMonitor
+     */
+    protected NestedSetMonitor getMonitor() {
+        return NestedSetMonitor.NONE;
+    }
+
+    /**
+     * Returns the strategy, which protects modifying operations against concurrent modifications of the same tree.
+     * By default no transaction is opened and no lock is acquired, so the caller has to make sure that each tree is
+     * only modified by one thread at a time.
+     * <p>
+     * Inserting a root is never locked, as it creates a new tree. Compaction and rebuilds lock all trees.
+     *
+     * @return lock strategy
+     * @see io.github.wernz0r.nestedsets4jooq.lock.RowLockStrategy
+     * @see io.github.wernz0r.nestedsets4jooq.lock.AdvisoryLockStrategy
+     * @see io.github.wernz0r.nestedsets4jooq.lock.OptimisticLockStrategy
+     */
+    protected LockStrategy getLockStrategy() {
+        return LockStrategy.NONE;
+    }
+
+    /**
+     * Returns the jOOQ configuration of the dao. Within {@link #transactionResult(Supplier)}, the configuration of
+     * the transaction is returned. While a monitored operation is executed, a configuration is
+     * returned which counts the executed statements.
+     *
+     * @return jOOQ configuration
+     */
+    @Override
+    public Configuration configuration() {
+        final Configuration transaction = currentTransaction.get();
+
+        // the transaction is derived from the configuration below, so it counts the statements as well
+        if (transaction != null) {
+            return transaction;
+        }
+
+        final Configuration configuration = super.configuration();
+
+        if (currentOperation.get() == null) {
+            return configuration;
+        }
+
+        Map.Entry<Configuration, Configuration> monitored = monitoredConfiguration;
+
+        if (monitored == null || monitored.getKey() != configuration) {
+            monitored = Map.entry(configuration, configuration.deriveAppending(ExecuteListener.onExecuteEnd(ctx -> {
+                final OperationRecorder operation = currentOperation.get();
+
+                if (operation != null) {
+                    operation.statements++;
+                }
+            })));
+            monitoredConfiguration = monitored;
+        }
+        return monitored.getValue();
+    }
+
+    /**
+     * Adds a node as root. A root always has the left value 1, the right value 2 (or 1 plus the gap size when sparse
+     * numbering is enabled) and the level 0.
      *
      * @param node node to be inserted as root
      */
     @Override
     public void insertAsRoot(N node) {
-        node.setLeft(1L);
-        node.setRight(2L);
-        node.setLevel(0L);
+        monitored("insertAsRoot", () -> {
+            node.setLeft(1L);
+            node.setRight(1L + getGapSize());
+            node.setLevel(0L);
 
-        insert(node);
+            insert(node);
+        });
     }
 
     /**
@@ -100,15 +353,23 @@ public abstract class AbstractNestedSetDao<R extends UpdatableRecord<R>, N exten
      */
     @Override
     public void insertAsFirstChild(N parent, N child) {
-        final N parentRecord = fetch(parent);
+        locked("insertAsFirstChild", List.of(parent), () -> {
+            if (isSparse()) {
+                insertSparse(parent, child, Position.FIRST_CHILD);
+                return;
+            }
 
-        child.setLeft(parentRecord.getLeft() + 1);
-        child.setRight(parentRecord.getLeft() + 2);
-        child.setLevel(parentRecord.getLevel() + 1);
+            final N parentRecord = resolve(parent);
 
-        shiftNodes(child.getLeft());
+            child.setLeft(parentRecord.getLeft() + 1);
+            child.setRight(parentRecord.getLeft() + 2);
+            child.setLevel(parentRecord.getLevel() + 1);
+            copyScope(parentRecord, child);
 
-        insert(child);
+            shiftNodes(inTreeOf(parentRecord), child.getLeft());
+
+            insert(child);
+        });
     }
 
     /**
@@ -119,15 +380,23 @@ public abstract class AbstractNestedSetDao<R extends UpdatableRecord<R>, N exten
      */
     @Override
     public void insertAsLastChild(N parent, N child) {
-        final N parentRecord = fetch(parent);
+        locked("insertAsLastChild", List.of(parent), () -> {
+            if (isSparse()) {
+                insertSparse(parent, child, Position.LAST_CHILD);
+                return;
+            }
+
+            final N parentRecord = resolve(parent);
 
-        child.setLeft(parentRecord.getRight());
-        child.setRight(parentRecord.getRight() + 1);
-        child.setLevel(parentRecord.getLevel() + 1);
+            child.setLeft(parentRecord.getRight());
+            child.setRight(parentRecord.getRight() + 1);
+            child.setLevel(parentRecord.getLevel() + 1);
+            copyScope(parentRecord, child);
 
-        shiftNodes(child.getLeft());
+            shiftNodes(inTreeOf(parentRecord), child.getLeft());
 
-        insert(child);
+            insert(child);
+        });
     }
 
     /**
@@ -138,15 +407,24 @@ public abstract class AbstractNestedSetDao<R extends UpdatableRecord<R>, N exten
      */
     @Override
     public void insertAsPrevSibling(N existingNode, N sibling) {
-        final N nodeRecord = fetch(existingNode);
+        locked("insertAsPrevSibling", List.of(existingNode), () -> {
+            if (isSparse()) {
+                insertSparse(existingNode, sibling, Position.PREV_SIBLING);
+                return;
+            }
 
-        sibling.setLeft(nodeRecord.getLeft());
-        sibling.setRight(nodeRecord.getLeft() + 1);
-        sibling.setLevel(nodeRecord.getLevel());
+            final N nodeRecord = resolve(existingNode);
 
-        shiftNodes(sibling.getLeft());
+            rejectRoot(nodeRecord);
+            sibling.setLeft(nodeRecord.getLeft());
+            sibling.setRight(nodeRecord.getLeft() + 1);
+            sibling.setLevel(nodeRecord.getLevel());
+            copyScope(nodeRecord, sibling);
 
-        insert(sibling);
+            shiftNodes(inTreeOf(nodeRecord), sibling.getLeft());
+
+            insert(sibling);
+        });
     }
 
     /**
@@ -157,15 +435,83 @@ public abstract class AbstractNestedSetDao<R extends UpdatableRecord<R>, N exten
      */
     @Override
     public void insertAsNextSibling(N existingNode, N sibling) {
-        final N nodeRecord = fetch(existingNode);
+        locked("insertAsNextSibling", List.of(existingNode), () -> {
+            if (isSparse()) {
+                insertSparse(existingNode, sibling, Position.NEXT_SIBLING);
+                return;
+            }
+
+            final N nodeRecord = resolve(existingNode);
 
-        sibling.setLeft(nodeRecord.getRight() + 1);
-        sibling.setRight(nodeRecord.getRight() + 2);
-        sibling.setLevel(nodeRecord.getLevel());
+            rejectRoot(nodeRecord);
+            sibling.setLeft(nodeRecord.getRight() + 1);
+            sibling.setRight(nodeRecord.getRight() + 2);
+            sibling.setLevel(nodeRecord.getLevel());
+            copyScope(nodeRecord, sibling);
 
-        shiftNodes(sibling.getLeft());
+            shiftNodes(inTreeOf(nodeRecord), sibling.getLeft());
 
-        insert(sibling);
+            insert(sibling);
+        });
+    }
+
+    /**
+     * Adds a whole tree of new nodes to an existing node. The top node of the tree will be placed as last child of
+     * the parent. The nodes are numbered in memory, so the gap for all nodes is created at once and the nodes are
+     * written with a single batch insert.
+     * <p>
+     * Note that, depending on the database, generated IDs might not be written back to the nodes of the tree.
+     *
+     * @param parent  parent node
+     * @param subtree tree of nodes which will be added as last child
+     */
+    @Override
+    public void insertSubtree(N parent, NestedSetTree<N> subtree) {
+        locked("insertSubtree", List.of(parent), () -> {
+            final N parentRecord = resolve(parent);
+
+            final List<N> nodes = new ArrayList<>();
+            final Deque<NestedSetTree<N>> path = new ArrayDeque<>();
+            final Deque<Iterator<NestedSetTree<N>>> iterators = new ArrayDeque<>();
+
+            final long gapSize = getGapSize();
+            long value = parentRecord.getRight();
+
+            subtree.getNode().setLeft(value);
+            value += gapSize;
+            subtree.getNode().setLevel(parentRecord.getLevel() + 1);
+            nodes.add(subtree.getNode());
+            path.push(subtree);
+            iterators.push(subtree.getChildren().iterator());
+
+            // number the nodes depth-first without recursion, so deep trees cannot overflow the stack
+            while (!iterators.isEmpty()) {
+                final Iterator<NestedSetTree<N>> iterator = iterators.peek();
+
+                if (iterator.hasNext()) {
+                    final NestedSetTree<N> child = iterator.next();
+
+                    child.getNode().setLeft(value);
+                    value += gapSize;
+                    child.getNode().setLevel(parentRecord.getLevel() + 1 + path.size());
+                    nodes.add(child.getNode());
+                    path.push(child);
+                    iterators.push(child.getChildren().iterator());
+                } else {
+                    iterators.pop();
+                    path.pop().getNode().setRight(value);
+                    value += gapSize;
+                }
+            }
+
+            for (N node : nodes) {
+                copyScope(parentRecord, node);
+            }
+
+            shiftNodes(inTreeOf(parentRecord), parentRecord.getRight(), value - parentRecord.getRight());
+
+            insert(nodes);
+        });
     }
 
     /**
@@ -176,9 +522,13 @@ public abstract class AbstractNestedSetDao<R extends UpdatableRecord<R>, N exten
      */
     @Override
     public boolean hasChildren(N node) {
-        final N nodeRecord = fetch(node);
+        return monitored("hasChildren", () -> {
+            final Table<R> nodeTable = getTable().as(NODE_ALIAS);
 
-        return nodeRecord.getRight() - node.getLeft() > 1;
+            return ctx().fetchExists(selectRelatives(nodeTable, node)
+                    .where(getLeftField().greaterThan(nodeTable.field(getLeftField())))
+                    .and(getLeftField().lessThan(nodeTable.field(getRightField()))));
+        });
     }
 
     /**
@@ -189,398 +539,2241 @@ public abstract class AbstractNestedSetDao<R extends UpdatableRecord<R>, N exten
      */
     @Override
     public List<N> getChildren(N node) {
-        return getDescendants(node, 1);
+        return monitored("getChildren", () -> getDescendants(node, 1));
     }
 
     /**
-     * Returns all descendants of a node as a sorted list. The direct descendant (child) will be at the beginning of the
-     * list.
+     * Returns the children of multiple nodes, e.g. to render the navigation of a page with a single round-trip. All
+     * children are read by a single query, which joins the rows of the passed nodes to the table.
      *
-     * @param node Node whose descendants are to be determined
-     * @return Sorted list of all descendants of the node
+     * @param nodes Nodes whose children are to be determined
+     * @return Sorted lists of the children by ID of the nodes, in the order of the passed nodes. Nodes without
+     * children, or which do not exist, are mapped to an empty list.
      */
     @Override
-    public List<N> getDescendants(N node) {
-        return getDescendants(node, 0);
+    public Map<T, List<N>> getChildrenBatch(Collection<N> nodes) {
+        return monitored("getChildrenBatch", () -> {
+            final Table<R> nodeTable = getTable().as(NODE_ALIAS);
+
+            return groupByNode(nodes, selectRelativesOfAll(nodeTable, nodes)
+                    .where(getLeftField().greaterThan(nodeTable.field(getLeftField())))
+                    .and(getRightField().lessThan(nodeTable.field(getRightField())))
+                    .and(levelRange(nodeTable, 1, 1))
+                    .orderBy(getLeftField().asc()));
+        });
     }
 
     /**
-     * Returns the descendants of a node as a sorted list. The direct descendant (child) will be at the beginning of the
-     * list. To only get the descendants up to a certain generation, the numberOfGenerations parameter must be set to a
-     * value greater than zero. Otherwise all generations will be returned.
+     * Returns the number of children of a node without reading them. Nodes which do not exist have no children.
      *
-     * @param node                Node whose descendants are to be determined
-     * @param numberOfGenerations All generations when 0. Otherwise only the given amount of descendants will be
-     *                            returned
-     * @return Sorted list of descendants of the node.
+     * @param node Node whose children are to be counted
+     * @return Number of children
      */
     @Override
-    public List<N> getDescendants(N node, int numberOfGenerations) {
-        final N nodeRecord = fetch(node);
-
-        final Condition generationIsZero = DSL.condition(numberOfGenerations == 0);
-
-        return ctx().select()
-                .from(getTable())
-                .where(getLeftField().greaterThan(nodeRecord.getLeft()))
-                .and(getRightField().lessThan(nodeRecord.getRight()))
-                .and(generationIsZero.or(getLevelField().lessOrEqual(nodeRecord.getLevel() + numberOfGenerations)))
-                .orderBy(getLeftField().asc())
-                .fetchInto(getType());
+    public long countChildren(N node) {
+        return monitored("countChildren", () -> {
+            final Table<R> nodeTable = getTable().as(NODE_ALIAS);
+
+            return countRelatives(nodeTable, node, getLeftField().greaterThan(nodeTable.field(getLeftField()))
+                    .and(getRightField().lessThan(nodeTable.field(getRightField())))
+                    .and(levelRange(nodeTable, 1, 1)));
+        });
     }
 
     /**
-     * Returns the node with all its descendants as a sorted list. The node itself will be at the beginning of the
-     * list.
+     * Returns the number of children of multiple nodes with a single aggregating query.
      *
-     * @param node Node whose descendants will be returned.
-     * @return Sorted list of descendants of the node including the node.
+     * @param nodes Nodes whose children are to be counted
+     * @return Number of children by ID of the nodes, in the order of the passed nodes. Nodes which do not exist are
+     * mapped to 0.
      */
     @Override
-    public List<N> getNodeAndAllDescendants(N node) {
-        final N nodeRecord = fetch(node);
-
-        return ctx().select()
-                .from(getTable())
-                .where(getLeftField().greaterOrEqual(nodeRecord.getLeft()))
-                .and(getRightField().lessOrEqual(nodeRecord.getRight()))
-                .orderBy(getLeftField().asc())
-                .fetchInto(getType());
+    public Map<T, Long> countChildrenBatch(Collection<N> nodes) {
+        return monitored("countChildrenBatch", () -> {
+            final Table<R> nodeTable = getTable().as(NODE_ALIAS);
+
+            return countRelativesOfAll(nodeTable, nodes, getLeftField().greaterThan(nodeTable.field(getLeftField()))
+                    .and(getRightField().lessThan(nodeTable.field(getRightField())))
+                    .and(levelRange(nodeTable, 1, 1)));
+        });
     }
 
     /**
-     * Returns all entries as sorted list. The sorted list represents the order of the tree.
+     * Returns the number of descendants of a node without reading them. In a densely numbered tree without deleted
+     * nodes the number is calculated from the left and right value of the node, which are only read if they cannot
+     * be trusted. Otherwise the descendants are counted by the database. Nodes which do not exist have no
+     * descendants.
      *
-     * @return Sorted list containing all entries.
+     * @param node Node whose descendants are to be counted
+     * @return Number of descendants
      */
     @Override
-    public List<N> findAll() {
-        return ctx()
-                .selectFrom(getTable())
-                .orderBy(getLeftField().asc())
-                .fetchInto(getType());
+    public long countDescendants(N node) {
+        return monitored("countDescendants", () -> {
+            if (isGapless()) {
+                if (isTrustedMode() && node.getLeft() != null && node.getRight() != null) {
+                    return (node.getRight() - node.getLeft() - 1) / 2;
+                }
+
+                final Long count = ctx().select(sizeOfSubtree())
+                        .from(getTable())
+                        .where(getIdField().eq(node.getId()))
+                        .fetchOne(0, Long.class);
+
+                return count != null ? count : 0L;
+            }
+
+            final Table<R> nodeTable = getTable().as(NODE_ALIAS);
+
+            return countRelatives(nodeTable, node, getLeftField().greaterThan(nodeTable.field(getLeftField()))
+                    .and(getRightField().lessThan(nodeTable.field(getRightField()))));
+        });
     }
 
     /**
-     * Returns the ancestors of a node as a sorted list. The direct ancestor (parent) will be at the beginning of the
-     * list. To only get the ancestors up to a certain generation, the numberOfAncestors parameter must be set to a
-     * value greater than zero. Otherwise all generations will be returned.
+     * Returns the number of descendants of multiple nodes with a single query. In a densely numbered tree without
+     * deleted nodes the numbers are calculated from the left and right values, otherwise the descendants of all nodes
+     * are counted by a single aggregating query.
      *
-     * @param node              Node whose ancestors are to be determined
-     * @param numberOfAncestors All generations when 0. Otherwise only the given amount of ancestors will be
-     *                          returned
-     * @return Sorted list of ancestors of the node
+     * @param nodes Nodes whose descendants are to be counted
+     * @return Number of descendants by ID of the nodes, in the order of the passed nodes. Nodes which do not exist
+     * are mapped to 0.
      */
     @Override
-    public List<N> getAncestors(N node, int numberOfAncestors) {
-        final N nodeRecord = fetch(node);
-
-        final Condition generationIsZero = DSL.condition(numberOfAncestors == 0);
-
-        return ctx().select()
-                .from(getTable())
-                .where(getLeftField().lessThan(nodeRecord.getLeft()))
-                .and(getRightField().greaterThan(nodeRecord.getRight()))
-                .and(generationIsZero.or(getLevelField().greaterOrEqual(nodeRecord.getLevel() - numberOfAncestors)))
-                .orderBy(getRightField().asc())
-                .fetchInto(getType());
+    public Map<T, Long> subtreeSizes(Collection<N> nodes) {
+        return monitored("subtreeSizes", () -> {
+            if (!isGapless()) {
+                final Table<R> nodeTable = getTable().as(NODE_ALIAS);
+
+                return countRelativesOfAll(nodeTable, nodes,
+                        getLeftField().greaterThan(nodeTable.field(getLeftField()))
+                                .and(getRightField().lessThan(nodeTable.field(getRightField()))));
+            }
+
+            final Map<T, Long> sizes = zeroByNode(nodes);
+
+            if (sizes.isEmpty()) {
+                return sizes;
+            }
+
+            for (Record2<T, Long> record : ctx().select(getIdField(), sizeOfSubtree())
+                    .from(getTable())
+                    .where(getIdField().in(sizes.keySet()))
+                    .fetch()) {
+                sizes.put(record.value1(), record.value2());
+            }
+            return sizes;
+        });
     }
 
     /**
-     * Returns all ancestors of a node as a sorted list. The direct ancestor (parent) will be at the beginning of the
-     * list.
+     * Returns true, when the tree is numbered densely and contains no nodes marked as deleted. In this case there are
+     * no gaps between the values of neighbouring nodes, so the number of descendants of a node can be calculated from
+     * its left and right value and the neighbours of a node can be looked up by their exact values. Nodes written
+     * to the table by other means, e.g. by an import, must not leave gaps in this case.
      *
-     * @param node Node whose ancestors are to be determined
-     * @return Sorted list of all ancestors of the node
+     * @return true, when there are no gaps between neighbouring values
      */
-    @Override
-    public List<N> getAncestors(N node) {
-        return getAncestors(node, 0);
+    public boolean isGapless() {
+        return !isSparse() && getDeletedField() == null;
     }
 
     /**
-     * Returns the parent of a given node.
+     * Returns the expression for the number of descendants of a node in a densely numbered tree.
      *
-     * @param node Node whose parent should be returned
-     * @return Parent node
+     * @return (right - left - 1) / 2
      */
-    @Override
-    public N getParent(N node) {
-        return getAncestors(node).get(0);
+    private Field<Long> sizeOfSubtree() {
+        return getRightField().sub(getLeftField()).sub(1L).div(2L);
     }
 
     /**
-     * Deletes a node and all its descendants from the database. The gaps in the tree created during deletion are
-     * closed.
+     * Counts the rows, which are related to a node by the given condition.
      *
-     * @param node Node to be deleted
+     * @param nodeTable alias of the table, which is used for the row of the node
+     * @param node      node the query refers to
+     * @param condition condition for the related rows
+     * @return number of related rows
      */
-    @Override
-    public void delete(N node) {
-        final N nodeRecord = fetch(node);
-
-        ctx().deleteFrom(getTable())
-                .where(getLeftField().greaterOrEqual(nodeRecord.getLeft()))
-                .and(getRightField().lessOrEqual(nodeRecord.getRight()))
-                .execute();
-
-        // close the gap
-        final Long sizeOfGap = nodeRecord.getLeft() - nodeRecord.getRight() - 1;
-
-        shiftNodes(nodeRecord.getRight() + 1, sizeOfGap);
+    private long countRelatives(Table<R> nodeTable, N node, Condition condition) {
+        return ctx().selectCount()
+                .from(getTable())
+                .join(nodeTable).on(nodeTable.field(getIdField()).eq(node.getId()))
+                .and(inTreeOf(nodeTable))
+                .and(notDeleted(getTable()))
+                .and(notDeleted(nodeTable))
+                .where(condition)
+                .fetchOne(0, Long.class);
     }
 
     /**
-     * Makes the source node the first child of the destination node.
+     * Counts the rows, which are related to each of multiple nodes by the given condition, with a single aggregating
+     * query.
      *
-     * @param source      source node
-     * @param destination destination node
+     * @param nodeTable alias of the table, which is used for the rows of the nodes
+     * @param nodes     nodes the query refers to
+     * @param condition condition for the related rows
+     * @return number of related rows by ID of the nodes, in the order of the passed nodes
      */
-    @Override
-    public void moveAsFirstChild(N source, N destination) {
-        if (source == destination) {
-            throw new IllegalArgumentException("Cannot make node the first child of itself.");
-        }
-
-        final N sourceRecord = fetch(source);
-        final N destinationRecord = fetch(destination);
+    private Map<T, Long> countRelativesOfAll(Table<R> nodeTable, Collection<N> nodes, Condition condition) {
+        final Map<T, Long> counts = zeroByNode(nodes);
 
-        final Long oldLevel = sourceRecord.getLevel();
-        final Long newLevel = destinationRecord.getLevel() + 1;
-
-        sourceRecord.setLevel(newLevel);
-        update(sourceRecord);
+        if (counts.isEmpty()) {
+            return counts;
+        }
 
-        moveNode(sourceRecord, destinationRecord.getLeft() + 1, newLevel - oldLevel);
+        for (Record2<T, Long> record : ctx().select(nodeTable.field(getIdField()), DSL.count().cast(Long.class))
+                .from(getTable())
+                .join(nodeTable).on(nodeTable.field(getIdField()).in(counts.keySet()))
+                .and(inTreeOf(nodeTable))
+                .and(notDeleted(getTable()))
+                .and(notDeleted(nodeTable))
+                .where(condition)
+                .groupBy(nodeTable.field(getIdField()))
+                .fetch()) {
+            counts.put(record.value1(), record.value2());
+        }
+        return counts;
     }
 
     /**
-     * Makes the source node the last child of the destination node.
+     * Returns a map of the IDs of multiple nodes to 0.
      *
-     * @param source      source node
-     * @param destination destination node
+     * @param nodes nodes
+     * @return 0 by ID of the nodes, in the order of the passed nodes
      */
-    @Override
-    public void moveAsLastChild(N source, N destination) {
-        if (source == destination) {
-            throw new IllegalArgumentException("Cannot make node the last child of itself.");
-        }
+    private Map<T, Long> zeroByNode(Collection<N> nodes) {
+        final Map<T, Long> counts = new LinkedHashMap<>();
 
-        final N sourceRecord = fetch(source);
-        final N destinationRecord = fetch(destination);
-
-        final Long oldLevel = sourceRecord.getLevel();
-        final Long newLevel = destinationRecord.getLevel() + 1;
-
-        sourceRecord.setLevel(newLevel);
-        update(sourceRecord);
-
-        moveNode(sourceRecord, destinationRecord.getRight(), newLevel - oldLevel);
+        for (N node : nodes) {
+            counts.put(node.getId(), 0L);
+        }
+        return counts;
     }
 
     /**
-     * Makes the source node the next sibling of the destination node.
+     * Returns all descendants of a node as a sorted list. The direct descendant (child) will be at the beginning of the
+     * list.
      *
-     * @param source      source node
-     * @param destination destination node
+     * @param node Node whose descendants are to be determined
+     * @return Sorted list of all descendants of the node
      */
     @Override
-    public void moveAsNextSibling(N source, N destination) {
-        if (source == destination) {
-            throw new IllegalArgumentException("Cannot make node the next sibling of itself.");
-        }
-
-        final N sourceRecord = fetch(source);
-        final N destinationRecord = fetch(destination);
-
-        final Long oldLevel = sourceRecord.getLevel();
-        final Long newLevel = destinationRecord.getLevel();
-
-        sourceRecord.setLevel(newLevel);
-        update(sourceRecord);
-
-        moveNode(sourceRecord, destinationRecord.getRight() + 1, newLevel - oldLevel);
+    public List<N> getDescendants(N node) {
+        return getDescendants(node, 0);
     }
 
     /**
-     * Makes the source node the previous sibling of the destination node.
+     * Returns the descendants of a node as a sorted list. The direct descendant (child) will be at the beginning of the
+     * list. To only get the descendants up to a certain generation, the numberOfGenerations parameter must be set to a
+     * value greater than zero. Otherwise all generations will be returned.
      *
-     * @param source      source node
-     * @param destination destination node
+     * @param node                Node whose descendants are to be determined
+     * @param numberOfGenerations All generations when 0. Otherwise only the given amount of descendants will be
+     *                            returned
+     * @return Sorted list of descendants of the node.
      */
     @Override
-    public void moveAsPrevSibling(N source, N destination) {
-        if (source == destination) {
-            throw new IllegalArgumentException("Cannot make node the previous sibling of itself.");
-        }
-
-        final N sourceRecord = fetch(source);
-        final N destinationRecord = fetch(destination);
-
-        final Long oldLevel = sourceRecord.getLevel();
-        final Long newLevel = destinationRecord.getLevel();
-
-        sourceRecord.setLevel(newLevel);
-        update(sourceRecord);
-
-        moveNode(sourceRecord, destinationRecord.getLeft(), newLevel - oldLevel);
+    public List<N> getDescendants(N node, int numberOfGenerations) {
+        return monitored("getDescendants", () -> selectDescendants(node, numberOfGenerations).fetchInto(getType()));
     }
 
     /**
-     * Moves a node and all its children to new location inside the tree. The new location is defined by the
-     * leftDest value.
+     * Returns a page of the descendants of a node, sorted by the left value. Instead of skipping the rows of the
+     * previous pages, the page starts after the left value of the last descendant of the previous page, so every page
+     * is read by an index range scan of the same cost. Pass the left value of the last descendant of a page to read
+     * the next page, and null to read the first page.
      *
-     * @param node            node which is to be moved
-     * @param leftDest        new position of the node
-     * @param levelDifference level difference which will result in moving the node
+     * @param node                Node whose descendants are to be determined
+     * @param afterLeft           Left value of the last descendant of the previous page, or null for the first page
+     * @param limit               Maximum number of descendants of the page
+     * @param numberOfGenerations All generations when 0. Otherwise only the given amount of descendants will be
+     *                            returned
+     * @return Sorted list of the descendants of the page, which is shorter than the limit for the last page
      */
-    private void moveNode(N node, Long leftDest, Long levelDifference) {
-        final long sizeOfTree = node.getRight() - node.getLeft() + 1;
-
-        // create a gap at the new position in the size of the tree
-        shiftNodes(leftDest, sizeOfTree);
-
-        Long left = node.getLeft();
-        Long right = node.getRight();
-
-        // if the node was also shifted, the size of the tree must be added
-        if (left >= leftDest) {
-            left += sizeOfTree;
-            right += sizeOfTree;
-        }
-
-        // set the new level for all descendants of the node
-        ctx().update(getTable())
-                .set(getLevelField(), getLevelField().add(levelDifference))
-                .where(getLeftField().greaterThan(left))
-                .and(getRightField().lessThan(right))
-                .execute();
-
-        // increment all nodes between left and right in the size of the tree
-        shiftNodes(left, right, leftDest - left);
-
-        // close gap
-        shiftNodes(right + 1, -sizeOfTree);
+    public List<N> getDescendantsPage(N node, Long afterLeft, int limit, int numberOfGenerations) {
+        return monitored("getDescendantsPage", () -> {
+            final SelectSeekStep1<Record, Long> query = filterDescendants(node, numberOfGenerations,
+                    Arrays.asList(getTable().fields())).orderBy(getLeftField().asc());
+
+            return (afterLeft == null ? query.limit(limit) : query.seek(afterLeft).limit(limit))
+                    .fetchInto(getType());
+        });
     }
 
     /**
-     * Reads a passed node from the database using its ID and returns the associated record.
-     * If no node is found for the ID, the function throws a NodeNotFoundException.
+     * Returns all descendants of a node as a sorted stream. The rows are read lazily from the database, so even huge
+     * subtrees can be processed in constant memory. The stream must be closed after use, e.g. by a try-with-resources
+     * statement.
      *
-     * @param node Node to be read
-     * @return Record
+     * @param node Node whose descendants are to be determined
+     * @return Sorted stream of all descendants of the node
      */
     @Override
-    public N fetch(N node) {
-        final N nodeRecord = findById(node.getId());
-
-        if (nodeRecord == null) {
-            throw new NodeNotFoundException("Node with id " + node.getId() + " not found.");
-        }
-        return nodeRecord;
+    public Stream<N> streamDescendants(N node) {
+        return streamDescendants(node, 0);
     }
 
     /**
-     * Checks wether a given node is a root node.
+     * Returns the descendants of a node as a sorted stream. The rows are read lazily from the database, so even huge
+     * subtrees can be processed in constant memory. The stream must be closed after use, e.g. by a try-with-resources
+     * statement.
      *
-     * @param node node to be checked
-     * @return true, when node is root. false otherwise.
+     * @param node                Node whose descendants are to be determined
+     * @param numberOfGenerations All generations when 0. Otherwise only the given amount of descendants will be
+     *                            returned
+     * @return Sorted stream of descendants of the node
      */
     @Override
-    public boolean isRoot(N node) {
-        final N nodeRecord = fetch(node);
-
-        return 0 == nodeRecord.getLevel();
+    public Stream<N> streamDescendants(N node, int numberOfGenerations) {
+        return monitored("streamDescendants", () -> selectDescendants(node, numberOfGenerations)
+                .fetchSize(getFetchSize())
+                .fetchStreamInto(getType()));
     }
 
     /**
-     * Creates a gap on the right and left side of a tree so that a new node can be inserted there.
-     * The gap always has a size of 2.
+     * Returns the descendants of a node as a sorted list of records, which only contain the ID, the left, right and
+     * level value and the given fields. Use this method instead of {@link #getDescendants(Object, int)} to avoid
+     * reading large columns, which are not needed.
      *
-     * @param startValue start value for the creation of the gap
-     */
-    private void shiftNodes(Long startValue) {
-        shiftLeftNodes(startValue, 2L);
-        shiftRightNodes(startValue, 2L);
-    }
+     * @param node                Node whose descendants are to be determined
+     * @param numberOfGenerations All generations when 0. Otherwise only the given amount of descendants will be
+     *                            returned
+     * @param fields              Additional fields to be read
+     * @return Sorted list of records of the descendants
+     */
+    public List<Record> getDescendants(N node, int numberOfGenerations, SelectField<?>... fields) {
+        return getDescendants(node, numberOfGenerations, record -> record, fields);
+    }
+
+    /**
+     * Returns the descendants of a node as a sorted list of objects created by a mapper. The records passed to the
+     * mapper only contain the ID, the left, right and level value and the given fields.
+     *
+     * @param node                Node whose descendants are to be determined
+     * @param numberOfGenerations All generations when 0. Otherwise only the given amount of descendants will be
+     *                            returned
+     * @param mapper              Mapper which creates an object per record
+     * @param fields              Additional fields to be read
+     * @param <E>                 Type of the created objects
+     * @return Sorted list of the objects of the descendants
+     */
+    public <E> List<E> getDescendants(N node, int numberOfGenerations, RecordMapper<? super Record, E> mapper,
+                                      SelectField<?>... fields) {
+        return monitored("getDescendants", () -> selectDescendants(node, numberOfGenerations, projection(fields))
+                .fetch(mapper));
+    }
+
+    /**
+     * Creates the query for the descendants of a node, sorted by the left value.
+     *
+     * @param node                Node whose descendants are to be determined
+     * @param numberOfGenerations All generations when 0. Otherwise only the given amount of descendants will be
+     *                            selected
+     * @return query for the descendants
+     */
+    private ResultQuery<Record> selectDescendants(N node, int numberOfGenerations) {
+        return selectDescendants(node, numberOfGenerations, Arrays.asList(getTable().fields()));
+    }
+
+    /**
+     * Creates the query for the given fields of the descendants of a node, sorted by the left value.
+     *
+     * @param node                Node whose descendants are to be determined
+     * @param numberOfGenerations All generations when 0. Otherwise only the given amount of descendants will be
+     *                            selected
+     * @param fields              Fields to be selected
+     * @return query for the descendants
+     */
+    private ResultQuery<Record> selectDescendants(N node, int numberOfGenerations,
+                                                  Collection<? extends SelectField<?>> fields) {
+        return filterDescendants(node, numberOfGenerations, fields).orderBy(getLeftField().asc());
+    }
+
+    /**
+     * Creates the unsorted query for the given fields of the descendants of a node.
+     *
+     * @param node                Node whose descendants are to be determined
+     * @param numberOfGenerations All generations when 0. Otherwise only the given amount of descendants will be
+     *                            selected
+     * @param fields              Fields to be selected
+     * @return query for the descendants
+     */
+    private SelectConditionStep<Record> filterDescendants(N node, int numberOfGenerations,
+                                                          Collection<? extends SelectField<?>> fields) {
+        final Table<R> nodeTable = getTable().as(NODE_ALIAS);
+
+        return selectRelatives(nodeTable, node, fields)
+                .where(getLeftField().greaterThan(nodeTable.field(getLeftField())))
+                .and(getRightField().lessThan(nodeTable.field(getRightField())))
+                .and(numberOfGenerations == 0 ? DSL.noCondition() : levelRange(nodeTable, 1, numberOfGenerations));
+    }
+
+    /**
+     * Creates a query, which joins the row of a node to the table. This way the values of the node can be used in the
+     * conditions of the query without reading the node separately. Nodes which are marked as deleted are ignored.
+     *
+     * @param nodeTable alias of the table, which is used for the row of the node
+     * @param node      node the query refers to
+     * @return query which selects all columns of the table
+     */
+    private SelectOnConditionStep<Record> selectRelatives(Table<R> nodeTable, N node) {
+        return selectRelatives(nodeTable, node, Arrays.asList(getTable().fields()));
+    }
+
+    /**
+     * Creates a query, which joins the row of a node to the table and selects the given fields.
+     *
+     * @param nodeTable alias of the table, which is used for the row of the node
+     * @param node      node the query refers to
+     * @param fields    fields to be selected
+     * @return query which selects the given fields
+     */
+    private SelectOnConditionStep<Record> selectRelatives(Table<R> nodeTable, N node,
+                                                          Collection<? extends SelectField<?>> fields) {
+        return ctx().select(fields)
+                .from(getTable())
+                .join(nodeTable).on(nodeTable.field(getIdField()).eq(node.getId()))
+                .and(inTreeOf(nodeTable))
+                .and(notDeleted(getTable()))
+                .and(notDeleted(nodeTable));
+    }
+
+    /**
+     * Returns the fields of a projection: the ID, the left, right and level value, which are needed to navigate the
+     * tree, followed by the requested fields.
+     *
+     * @param fields requested fields
+     * @return fields to be selected
+     */
+    private Collection<SelectField<?>> projection(SelectField<?>... fields) {
+        final Set<SelectField<?>> projection = new LinkedHashSet<>(
+                List.of(getIdField(), getLeftField(), getRightField(), getLevelField()));
+
+        projection.addAll(Arrays.asList(fields));
+        return projection;
+    }
+
+    /**
+     * Creates a query, which joins the rows of multiple nodes to the table. In addition to all columns of the table,
+     * the ID of the node a row refers to is selected, so the rows can be grouped by {@link #groupByNode}.
+     *
+     * @param nodeTable alias of the table, which is used for the rows of the nodes
+     * @param nodes     nodes the query refers to
+     * @return query which selects all columns of the table and the ID of the node
+     */
+    private SelectOnConditionStep<Record> selectRelativesOfAll(Table<R> nodeTable, Collection<N> nodes) {
+        final List<T> ids = new ArrayList<>(nodes.size());
+
+        for (N node : nodes) {
+            ids.add(node.getId());
+        }
+
+        return ctx().select(getTable().fields())
+                .select(nodeTable.field(getIdField()).as(NODE_ID_ALIAS))
+                .from(getTable())
+                .join(nodeTable).on(nodeTable.field(getIdField()).in(ids))
+                .and(inTreeOf(nodeTable))
+                .and(notDeleted(getTable()))
+                .and(notDeleted(nodeTable));
+    }
+
+    /**
+     * Executes a query created by {@link #selectRelativesOfAll} and groups its rows by the node they refer to. The
+     * order of the rows is retained within each group.
+     *
+     * @param nodes nodes the query refers to
+     * @param query query for the relatives of the nodes
+     * @return relatives by ID of the nodes, in the order of the passed nodes
+     */
+    private Map<T, List<N>> groupByNode(Collection<N> nodes, ResultQuery<Record> query) {
+        final Map<T, List<N>> relatives = new LinkedHashMap<>();
+
+        if (nodes.isEmpty()) {
+            return relatives;
+        }
+
+        for (N node : nodes) {
+            relatives.put(node.getId(), new ArrayList<>());
+        }
+
+        final Field<T> nodeId = DSL.field(DSL.name(NODE_ID_ALIAS), getIdField().getDataType());
+
+        for (Record record : query.fetch()) {
+            relatives.get(record.get(nodeId)).add(record.into(getType()));
+        }
+        return relatives;
+    }
+
+    /**
+     * Returns the node with all its descendants as a sorted list. The node itself will be at the beginning of the
+     * list.
+     *
+     * @param node Node whose descendants will be returned.
+     * @return Sorted list of descendants of the node including the node.
+     */
+    @Override
+    public List<N> getNodeAndAllDescendants(N node) {
+        return monitored("getNodeAndAllDescendants", () -> {
+            final Table<R> nodeTable = getTable().as(NODE_ALIAS);
+
+            return selectRelatives(nodeTable, node)
+                    .where(getLeftField().greaterOrEqual(nodeTable.field(getLeftField())))
+                    .and(getRightField().lessOrEqual(nodeTable.field(getRightField())))
+                    .orderBy(getLeftField().asc())
+                    .fetchInto(getType());
+        });
+    }
+
+    /**
+     * Returns the siblings of a node, i.e. the other children of its parent, as a sorted list. The siblings are read
+     * by a single query, which joins the rows of the node and its parent to the table.
+     *
+     * @param node Node whose siblings are to be determined
+     * @return Sorted list of the siblings, which is empty for roots
+     */
+    @Override
+    public List<N> getSiblings(N node) {
+        return monitored("getSiblings", () -> {
+            final Table<R> nodeTable = getTable().as(NODE_ALIAS);
+            final Table<R> parentTable = getTable().as(PARENT_ALIAS);
+
+            return selectRelatives(nodeTable, node)
+                    .join(parentTable).on(parentTable.field(getLeftField()).lessThan(nodeTable.field(getLeftField())))
+                    .and(parentTable.field(getRightField()).greaterThan(nodeTable.field(getRightField())))
+                    .and(parentTable.field(getLevelField()).eq(nodeTable.field(getLevelField()).sub(1L)))
+                    .and(inTreeOf(parentTable))
+                    .and(notDeleted(parentTable))
+                    .where(getLeftField().greaterThan(parentTable.field(getLeftField())))
+                    .and(getRightField().lessThan(parentTable.field(getRightField())))
+                    .and(getLevelField().eq(nodeTable.field(getLevelField())))
+                    .and(getIdField().ne(nodeTable.field(getIdField())))
+                    .orderBy(getLeftField().asc())
+                    .fetchInto(getType());
+        });
+    }
+
+    /**
+     * Returns the sibling directly following a node. In a densely numbered tree it is looked up by its left value,
+     * which is the right value of the node plus 1. Otherwise the node with the next left value is read, which is only
+     * a sibling, if it has the same level.
+     *
+     * @param node Node whose next sibling is to be determined
+     * @return Next sibling, or null if the node is the last child of its parent
+     */
+    @Override
+    public N getNextSibling(N node) {
+        return monitored("getNextSibling", () -> {
+            final Table<R> nodeTable = getTable().as(NODE_ALIAS);
+            final Field<Long> nodeRight = nodeTable.field(getRightField());
+
+            return selectNeighbour(nodeTable, node,
+                    isGapless() ? getLeftField().eq(nodeRight.add(1L)) : getLeftField().greaterThan(nodeRight),
+                    getLeftField().asc());
+        });
+    }
+
+    /**
+     * Returns the sibling directly preceding a node. In a densely numbered tree it is looked up by its right value,
+     * which is the left value of the node minus 1. Otherwise the node with the previous right value is read, which is
+     * only a sibling, if it has the same level.
+     *
+     * @param node Node whose previous sibling is to be determined
+     * @return Previous sibling, or null if the node is the first child of its parent
+     */
+    @Override
+    public N getPrevSibling(N node) {
+        return monitored("getPrevSibling", () -> {
+            final Table<R> nodeTable = getTable().as(NODE_ALIAS);
+            final Field<Long> nodeLeft = nodeTable.field(getLeftField());
+
+            return selectNeighbour(nodeTable, node,
+                    isGapless() ? getRightField().eq(nodeLeft.sub(1L)) : getRightField().lessThan(nodeLeft),
+                    getRightField().desc());
+        });
+    }
+
+    /**
+     * Returns the child of a node at a given position.
+     *
+     * @param parent Node whose child is to be determined
+     * @param index  Position of the child, starting at 0
+     * @return Child at the position, or null if the node has less children
+     */
+    @Override
+    public N getNthChild(N parent, int index) {
+        if (index < 0) {
+            throw new IllegalArgumentException("Index " + index + " is negative.");
+        }
+
+        return monitored("getNthChild", () -> filterDescendants(parent, 1, Arrays.asList(getTable().fields()))
+                .orderBy(getLeftField().asc())
+                .offset(index)
+                .limit(1)
+                .fetchOneInto(getType()));
+    }
+
+    /**
+     * Reads the first node in the given order which matches a condition relative to a node, and returns it if it has
+     * the same level as the node. The first node beyond the bounds of a node is either its sibling or belongs to a
+     * lower level, as the parent of the node encloses all siblings.
+     *
+     * @param nodeTable alias of the table, which is used for the row of the node
+     * @param node      node whose sibling is to be determined
+     * @param condition condition for the nodes beyond the bounds of the node
+     * @param order     order in which the nodes beyond the bounds of the node are visited
+     * @return sibling, or null if there is none
+     */
+    private N selectNeighbour(Table<R> nodeTable, N node, Condition condition, SortField<Long> order) {
+        final Field<Long> nodeLevel = nodeTable.field(getLevelField()).as(NODE_LEVEL_ALIAS);
+        final List<SelectField<?>> fields = new ArrayList<>(Arrays.asList(getTable().fields()));
+        fields.add(nodeLevel);
+
+        final Record neighbour = selectRelatives(nodeTable, node, fields)
+                .where(condition)
+                .orderBy(order)
+                .limit(1)
+                .fetchOne();
+
+        if (neighbour == null || !Objects.equals(neighbour.get(getLevelField()), neighbour.get(nodeLevel))) {
+            return null;
+        }
+        return neighbour.into(getType());
+    }
+
+    /**
+     * Returns the node with all its descendants as a tree of objects.
+     *
+     * @param node Node whose subtree will be returned
+     * @return Tree with the node at the top
+     */
+    @Override
+    public NestedSetTree<N> getSubtreeAsTree(N node) {
+        return getSubtreeAsTree(node, 0);
+    }
+
+    /**
+     * Returns the node with its descendants as a tree of objects. The subtree is read with a single query sorted by
+     * the left value and assembled in one pass by means of the level values. To only get the descendants up to a
+     * certain generation, the numberOfGenerations parameter must be set to a value greater than zero. Otherwise all
+     * generations will be returned.
+     *
+     * @param node                Node whose subtree will be returned
+     * @param numberOfGenerations All generations when 0. Otherwise only the given amount of descendants will be
+     *                            returned
+     * @return Tree with the node at the top
+     */
+    @Override
+    public NestedSetTree<N> getSubtreeAsTree(N node, int numberOfGenerations) {
+        return monitored("getSubtreeAsTree", () -> {
+            final Table<R> nodeTable = getTable().as(NODE_ALIAS);
+
+            final List<N> nodes = selectRelatives(nodeTable, node)
+                    .where(getLeftField().greaterOrEqual(nodeTable.field(getLeftField())))
+                    .and(getRightField().lessOrEqual(nodeTable.field(getRightField())))
+                    .and(numberOfGenerations == 0 ? DSL.noCondition() : levelRange(nodeTable, 0, numberOfGenerations))
+                    .orderBy(getLeftField().asc())
+                    .fetchInto(getType());
+
+            if (nodes.isEmpty()) {
+                throw new NodeNotFoundException("Node with id " + node.getId() + " not found.");
+            }
+
+            final NestedSetTree<N> tree = new NestedSetTree<>(nodes.get(0));
+            final Deque<NestedSetTree<N>> path = new ArrayDeque<>();
+            path.push(tree);
+
+            for (N descendant : nodes.subList(1, nodes.size())) {
+                // leave all subtrees which do not contain the descendant
+                while (path.peek().getNode().getLevel() >= descendant.getLevel()) {
+                    path.pop();
+                }
+                path.push(path.peek().addChild(descendant));
+            }
+
+            return tree;
+        });
+    }
+
+    /**
+     * Returns all entries as sorted list. The sorted list represents the order of the tree.
+     *
+     * @return Sorted list containing all entries.
+     */
+    @Override
+    public List<N> findAll() {
+        return monitored("findAll", () -> ctx()
+                .selectFrom(getTable())
+                .where(notDeleted(getTable()))
+                .orderBy(treeOrder())
+                .fetchInto(getType()));
+    }
+
+    /**
+     * Returns all entries as sorted list of records, which only contain the ID, the left, right and level value and
+     * the given fields.
+     *
+     * @param fields Additional fields to be read
+     * @return Sorted list containing the records of all entries
+     */
+    public List<Record> findAll(SelectField<?>... fields) {
+        return findAll(record -> record, fields);
+    }
+
+    /**
+     * Returns all entries as sorted list of objects created by a mapper. The records passed to the mapper only contain
+     * the ID, the left, right and level value and the given fields.
+     *
+     * @param mapper Mapper which creates an object per record
+     * @param fields Additional fields to be read
+     * @param <E>    Type of the created objects
+     * @return Sorted list containing the objects of all entries
+     */
+    public <E> List<E> findAll(RecordMapper<? super Record, E> mapper, SelectField<?>... fields) {
+        return monitored("findAll", () -> ctx()
+                .select(projection(fields))
+                .from(getTable())
+                .where(notDeleted(getTable()))
+                .orderBy(treeOrder())
+                .fetch(mapper));
+    }
+
+    /**
+     * Returns all entries as sorted stream. The sorted stream represents the order of the tree. The rows are read
+     * lazily from the database, so the stream must be closed after use, e.g. by a try-with-resources statement.
+     *
+     * @return Sorted stream containing all entries.
+     */
+    @Override
+    public Stream<N> streamAll() {
+        return monitored("streamAll", () -> ctx()
+                .selectFrom(getTable())
+                .where(notDeleted(getTable()))
+                .orderBy(treeOrder())
+                .fetchSize(getFetchSize())
+                .fetchStreamInto(getType()));
+    }
+
+    /**
+     * Returns the ancestors of a node as a sorted list. The direct ancestor (parent) will be at the beginning of the
+     * list. To only get the ancestors up to a certain generation, the numberOfAncestors parameter must be set to a
+     * value greater than zero. Otherwise all generations will be returned.
+     *
+     * @param node              Node whose ancestors are to be determined
+     * @param numberOfAncestors All generations when 0. Otherwise only the given amount of ancestors will be
+     *                          returned
+     * @return Sorted list of ancestors of the node
+     */
+    @Override
+    public List<N> getAncestors(N node, int numberOfAncestors) {
+        return monitored("getAncestors", () -> selectAncestors(node, numberOfAncestors,
+                Arrays.asList(getTable().fields())).fetchInto(getType()));
+    }
+
+    /**
+     * Returns the ancestors of a node as a sorted list of records, which only contain the ID, the left, right and
+     * level value and the given fields.
+     *
+     * @param node              Node whose ancestors are to be determined
+     * @param numberOfAncestors All generations when 0. Otherwise only the given amount of ancestors will be
+     *                          returned
+     * @param fields            Additional fields to be read
+     * @return Sorted list of records of the ancestors
+     */
+    public List<Record> getAncestors(N node, int numberOfAncestors, SelectField<?>... fields) {
+        return getAncestors(node, numberOfAncestors, record -> record, fields);
+    }
+
+    /**
+     * Returns the ancestors of a node as a sorted list of objects created by a mapper. The records passed to the
+     * mapper only contain the ID, the left, right and level value and the given fields.
+     *
+     * @param node              Node whose ancestors are to be determined
+     * @param numberOfAncestors All generations when 0. Otherwise only the given amount of ancestors will be
+     *                          returned
+     * @param mapper            Mapper which creates an object per record
+     * @param fields            Additional fields to be read
+     * @param <E>               Type of the created objects
+     * @return Sorted list of the objects of the ancestors
+     */
+    public <E> List<E> getAncestors(N node, int numberOfAncestors, RecordMapper<? super Record, E> mapper,
+                                    SelectField<?>... fields) {
+        return monitored("getAncestors", () -> selectAncestors(node, numberOfAncestors, projection(fields))
+                .fetch(mapper));
+    }
+
+    /**
+     * Creates the query for the given fields of the ancestors of a node, sorted by the right value.
+     *
+     * @param node              Node whose ancestors are to be determined
+     * @param numberOfAncestors All generations when 0. Otherwise only the given amount of ancestors will be
+     *                          selected
+     * @param fields            Fields to be selected
+     * @return query for the ancestors
+     */
+    private ResultQuery<Record> selectAncestors(N node, int numberOfAncestors,
+                                                Collection<? extends SelectField<?>> fields) {
+        final Table<R> nodeTable = getTable().as(NODE_ALIAS);
+
+        return selectRelatives(nodeTable, node, fields)
+                .where(getLeftField().lessThan(nodeTable.field(getLeftField())))
+                .and(getRightField().greaterThan(nodeTable.field(getRightField())))
+                .and(numberOfAncestors == 0 ? DSL.noCondition() : levelRange(nodeTable, -numberOfAncestors, -1))
+                .orderBy(getRightField().asc());
+    }
+
+    /**
+     * Returns the ancestors of multiple nodes, e.g. to render breadcrumbs for a list of search results. All ancestors
+     * are read by a single query, which joins the rows of the passed nodes to the table, instead of two queries per
+     * node.
+     *
+     * @param nodes Nodes whose ancestors are to be determined
+     * @return Sorted lists of the ancestors by ID of the nodes, in the order of the passed nodes. The direct ancestor
+     * (parent) will be at the beginning of each list. Roots, or nodes which do not exist, are mapped to an empty list.
+     */
+    @Override
+    public Map<T, List<N>> getAncestorsBatch(Collection<N> nodes) {
+        return monitored("getAncestorsBatch", () -> {
+            final Table<R> nodeTable = getTable().as(NODE_ALIAS);
+
+            return groupByNode(nodes, selectRelativesOfAll(nodeTable, nodes)
+                    .where(getLeftField().lessThan(nodeTable.field(getLeftField())))
+                    .and(getRightField().greaterThan(nodeTable.field(getRightField())))
+                    .orderBy(getRightField().asc()));
+        });
+    }
+
+    /**
+     * Returns all ancestors of a node as a sorted list. The direct ancestor (parent) will be at the beginning of the
+     * list.
+     *
+     * @param node Node whose ancestors are to be determined
+     * @return Sorted list of all ancestors of the node
+     */
+    @Override
+    public List<N> getAncestors(N node) {
+        return getAncestors(node, 0);
+    }
+
+    /**
+     * Returns the parent of a given node. The parent is read by a single query, only if there is none, the node
+     * itself is read to tell a root from a node which does not exist.
+     *
+     * @param node Node whose parent should be returned
+     * @return Parent node, or null if the node is a root
+     */
+    @Override
+    public N getParent(N node) {
+        return monitored("getParent", () -> {
+            final List<N> parents = getAncestors(node, 1);
+
+            if (parents.isEmpty()) {
+                fetch(node);
+                return null;
+            }
+            return parents.get(0);
+        });
+    }
+
+    /**
+     * Deletes a node and all its descendants from the database. The gaps in the tree created during deletion are
+     * closed, unless sparse numbering is enabled. If a deleted field is defined, the nodes are only marked as deleted.
+     *
+     * @param node Node to be deleted
+     */
+    @Override
+    public void delete(N node) {
+        locked("delete", List.of(node), () -> {
+            final N nodeRecord = resolve(node);
+
+            if (getDeletedField() != null) {
+                ctx().update(getTable())
+                        .set(getDeletedField(), true)
+                        .where(getLeftField().between(nodeRecord.getLeft(), nodeRecord.getRight()))
+                        .and(inTreeOf(nodeRecord))
+                        .execute();
+                return;
+            }
+
+            ctx().deleteFrom(getTable())
+                    .where(getLeftField().greaterOrEqual(nodeRecord.getLeft()))
+                    .and(getRightField().lessOrEqual(nodeRecord.getRight()))
+                    .and(inTreeOf(nodeRecord))
+                    .execute();
+
+            if (isSparse()) {
+                return;
+            }
+
+            // close the gap by shifting the following values to the left by the width of the subtree
+            final long sizeOfGap = nodeRecord.getRight() - nodeRecord.getLeft() + 1;
+
+            shiftNodes(inTreeOf(nodeRecord), nodeRecord.getRight() + 1, -sizeOfGap);
+        });
+    }
+
+    /**
+     * Deletes multiple nodes and all their descendants from the database. Nodes which are descendants of other passed
+     * nodes are deleted along with them. All subtrees are removed by a single statement and the gaps of each tree are
+     * closed by a single statement as well, unless sparse numbering is enabled. If a deleted field is defined, the
+     * nodes are only marked as deleted.
+     *
+     * @param nodes Nodes to be deleted
+     */
+    @Override
+    public void deleteAll(Collection<N> nodes) {
+        locked("deleteAll", nodes, () -> {
+            if (!nodes.isEmpty()) {
+                removeSubtrees(resolveAll(nodes), getDeletedField() == null);
+            }
+        });
+    }
+
+    /**
+     * Removes all nodes which are marked as deleted and closes the gaps they leave, unless sparse numbering is
+     * enabled. The marked subtrees are removed by a single statement and the gaps of each tree are closed by a single
+     * statement as well. As the statements lock large parts of the table, compaction should be scheduled at times of
+     * low load.
+     *
+     * @return number of removed nodes
+     * @see #getDeletedField()
+     */
+    public int compact() {
+        return locked("compact", null, () -> {
+            if (getDeletedField() == null) {
+                return 0;
+            }
+
+            final List<N> deletedNodes = ctx()
+                    .selectFrom(getTable())
+                    .where(getDeletedField().isTrue())
+                    .fetchInto(getType());
+
+            return deletedNodes.isEmpty() ? 0 : removeSubtrees(deletedNodes, true);
+        });
+    }
+
+    /**
+     * Removes the subtrees of multiple nodes by a single statement and closes the gaps of each tree by a single
+     * statement, unless sparse numbering is enabled. Instead of being removed, the nodes can also be marked as
+     * deleted, which leaves the gaps in place.
+     *
+     * @param nodes  roots of the subtrees, which may also contain each other
+     * @param remove true, when the nodes are removed. Otherwise they are marked as deleted.
+     * @return number of affected rows
+     */
+    private int removeSubtrees(List<N> nodes, boolean remove) {
+        // nodes of each tree sorted by their left value
+        final Map<Object, List<N>> trees = new HashMap<>();
+
+        for (N nodeRecord : nodes) {
+            trees.computeIfAbsent(getScopeField() == null ? null : scopeOf(nodeRecord), scope -> new ArrayList<>())
+                    .add(nodeRecord);
+        }
+
+        final List<Condition> subtrees = new ArrayList<>();
+        final List<Map.Entry<Condition, long[][]>> gaps = new ArrayList<>();
+
+        for (List<N> tree : trees.values()) {
+            tree.sort(Comparator.comparing(NestedSetNode::getLeft));
+
+            final List<long[]> ranges = new ArrayList<>();
+            final List<Condition> conditions = new ArrayList<>();
+
+            for (N nodeRecord : tree) {
+                // skip nodes which are part of a subtree that is already affected
+                if (!ranges.isEmpty() && nodeRecord.getLeft() < ranges.get(ranges.size() - 1)[1]) {
+                    continue;
+                }
+                ranges.add(new long[]{nodeRecord.getLeft(), nodeRecord.getRight()});
+                conditions.add(getLeftField().between(nodeRecord.getLeft(), nodeRecord.getRight()));
+            }
+
+            subtrees.add(inTreeOf(tree.get(0)).and(DSL.or(conditions)));
+            gaps.add(Map.entry(inTreeOf(tree.get(0)), ranges.toArray(new long[0][])));
+        }
+
+        if (!remove) {
+            return ctx().update(getTable())
+                    .set(getDeletedField(), true)
+                    .where(DSL.or(subtrees))
+                    .execute();
+        }
+
+        final int removed = ctx().deleteFrom(getTable())
+                .where(DSL.or(subtrees))
+                .execute();
+
+        if (!isSparse()) {
+            for (Map.Entry<Condition, long[][]> tree : gaps) {
+                closeGaps(tree.getKey(), tree.getValue());
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Makes the source node the first child of the destination node.
+     *
+     * @param source      source node
+     * @param destination destination node
+     */
+    @Override
+    public void moveAsFirstChild(N source, N destination) {
+        locked("moveAsFirstChild", List.of(source, destination), () -> {
+            if (source == destination) {
+                throw new IllegalArgumentException("Cannot make node the first child of itself.");
+            }
+
+            final N sourceRecord = resolve(source);
+            final N destinationRecord = resolve(destination);
+
+            final Long levelDifference = destinationRecord.getLevel() + 1 - sourceRecord.getLevel();
+
+            moveNode(sourceRecord, destinationRecord, destinationRecord.getLeft() + 1, levelDifference);
+        });
+    }
+
+    /**
+     * Makes the source node the last child of the destination node.
+     *
+     * @param source      source node
+     * @param destination destination node
+     */
+    @Override
+    public void moveAsLastChild(N source, N destination) {
+        locked("moveAsLastChild", List.of(source, destination), () -> {
+            if (source == destination) {
+                throw new IllegalArgumentException("Cannot make node the last child of itself.");
+            }
+
+            final N sourceRecord = resolve(source);
+            final N destinationRecord = resolve(destination);
+
+            final Long levelDifference = destinationRecord.getLevel() + 1 - sourceRecord.getLevel();
+
+            moveNode(sourceRecord, destinationRecord, destinationRecord.getRight(), levelDifference);
+        });
+    }
+
+    /**
+     * Makes the source node the next sibling of the destination node.
+     *
+     * @param source      source node
+     * @param destination destination node
+     */
+    @Override
+    public void moveAsNextSibling(N source, N destination) {
+        locked("moveAsNextSibling", List.of(source, destination), () -> {
+            if (source == destination) {
+                throw new IllegalArgumentException("Cannot make node the next sibling of itself.");
+            }
+
+            final N sourceRecord = resolve(source);
+            final N destinationRecord = resolve(destination);
+
+            rejectRoot(destinationRecord);
+
+            final Long levelDifference = destinationRecord.getLevel() - sourceRecord.getLevel();
+
+            moveNode(sourceRecord, destinationRecord, destinationRecord.getRight() + 1, levelDifference);
+        });
+    }
+
+    /**
+     * Makes the source node the previous sibling of the destination node.
+     *
+     * @param source      source node
+     * @param destination destination node
+     */
+    @Override
+    public void moveAsPrevSibling(N source, N destination) {
+        locked("moveAsPrevSibling", List.of(source, destination), () -> {
+            if (source == destination) {
+                throw new IllegalArgumentException("Cannot make node the previous sibling of itself.");
+            }
+
+            final N sourceRecord = resolve(source);
+            final N destinationRecord = resolve(destination);
+
+            rejectRoot(destinationRecord);
+
+            final Long levelDifference = destinationRecord.getLevel() - sourceRecord.getLevel();
+
+            moveNode(sourceRecord, destinationRecord, destinationRecord.getLeft(), levelDifference);
+        });
+    }
+
+    /**
+     * Moves a node and all its children to new location inside the tree. The new location is defined by the
+     * leftDest value, which refers to the numbering before the move.
+     * <p>
+     * The subtree and the nodes between the subtree and its new location are relocated by a single statement:
+     * the subtree is shifted by the distance to the new location, while the displaced nodes are shifted by the size
+     * of the subtree in the opposite direction. No temporary gap is needed.
+     *
+     * @param node            node which is to be moved
+     * @param destination     node which defines the new position
+     * @param leftDest        new position of the node
+     * @param levelDifference level difference which will result in moving the node
+     */
+    private void moveNode(N node, N destination, Long leftDest, Long levelDifference) {
+        final long left = node.getLeft();
+        final long right = node.getRight();
+        final long sizeOfTree = right - left + 1;
+
+        if (getScopeField() != null && !Objects.equals(scopeOf(node), scopeOf(destination))) {
+            throw new IllegalArgumentException("Cannot move node to another tree.");
+        }
+
+        if (leftDest > left && leftDest <= right) {
+            throw new IllegalArgumentException("Cannot move node into its own subtree.");
+        }
+
+        final long lower;
+        final long upper;
+        final long subtreeIncrement;
+        final long displacedIncrement;
+
+        if (leftDest <= left) {
+            // moving to the left, the nodes between the destination and the subtree make room to the right
+            lower = leftDest;
+            upper = right;
+            subtreeIncrement = leftDest - left;
+            displacedIncrement = sizeOfTree;
+        } else {
+            // moving to the right, the nodes between the subtree and the destination close up to the left
+            lower = left;
+            upper = leftDest - 1;
+            subtreeIncrement = leftDest - right - 1;
+            displacedIncrement = -sizeOfTree;
+        }
+
+        final Condition leftInSubtree = getLeftField().between(left, right);
+        final Condition rightInSubtree = getRightField().between(left, right);
+
+        // the level is set first, as some databases evaluate the assignments from left to right
+        recordShift(ctx().update(getTable())
+                .set(getLevelField(), DSL.when(leftInSubtree, getLevelField().add(levelDifference))
+                        .otherwise(getLevelField()))
+                .set(getLeftField(), DSL.when(leftInSubtree, getLeftField().add(subtreeIncrement))
+                        .when(getLeftField().between(lower, upper), getLeftField().add(displacedIncrement))
+                        .otherwise(getLeftField()))
+                .set(getRightField(), DSL.when(rightInSubtree, getRightField().add(subtreeIncrement))
+                        .when(getRightField().between(lower, upper), getRightField().add(displacedIncrement))
+                        .otherwise(getRightField()))
+                .where(getLeftField().between(lower, upper).or(getRightField().between(lower, upper)))
+                .and(inTreeOf(node))
+                .execute());
+    }
+
+    /**
+     * Reads a passed node from the database using its ID and returns the associated record.
+     * If no node is found for the ID, the function throws a NodeNotFoundException.
+     *
+     * @param node Node to be read
+     * @return Record
+     */
+    @Override
+    public N fetch(N node) {
+        return monitored("fetch", () -> {
+            final N nodeRecord = getDeletedField() == null ? findById(node.getId()) : ctx()
+                    .selectFrom(getTable())
+                    .where(getIdField().eq(node.getId()))
+                    .and(notDeleted(getTable()))
+                    .fetchOneInto(getType());
+
+            if (nodeRecord == null) {
+                throw new NodeNotFoundException("Node with id " + node.getId() + " not found.");
+            }
+            return nodeRecord;
+        });
+    }
+
+    /**
+     * Returns the passed node, if its values can be trusted. Otherwise the node is read from the database.
+     *
+     * @param node Node to be resolved
+     * @return Node with up to date values
+     * @see #isTrustedMode()
+     */
+    private N resolve(N node) {
+        if (isTrusted(node)) {
+            return node;
+        }
+        return fetch(node);
+    }
+
+    /**
+     * Returns true, if the values of a node can be trusted and are complete. If a scope field is defined, the scope
+     * must be set as well, otherwise every shift would be restricted to the tree without scope.
+     *
+     * @param node Node to be checked
+     * @return true, when the node does not have to be read from the database
+     * @see #isTrustedMode()
+     */
+    private boolean isTrusted(N node) {
+        return isTrustedMode() && node.getLeft() != null && node.getRight() != null && node.getLevel() != null
+                && (getScopeField() == null || scopeOf(node) != null);
+    }
+
+    /**
+     * Returns the passed nodes, if their values can be trusted. Otherwise all nodes are read from the database with a
+     * single statement.
+     *
+     * @param nodes Nodes to be resolved
+     * @return Nodes with up to date values
+     * @see #isTrustedMode()
+     */
+    private List<N> resolveAll(Collection<N> nodes) {
+        if (nodes.stream().allMatch(this::isTrusted)) {
+            return new ArrayList<>(nodes);
+        }
+
+        final Set<T> ids = new LinkedHashSet<>();
+
+        for (N node : nodes) {
+            ids.add(node.getId());
+        }
+
+        final List<N> nodeRecords = fetch(getIdField(), ids);
+
+        if (nodeRecords.size() < ids.size()) {
+            for (N nodeRecord : nodeRecords) {
+                ids.remove(nodeRecord.getId());
+            }
+            throw new NodeNotFoundException("Node with id " + ids.iterator().next() + " not found.");
+        }
+        return nodeRecords;
+    }
+
+    /**
+     * Checks wether a given node is a root node.
+     *
+     * @param node node to be checked
+     * @return true, when node is root. false otherwise.
+     */
+    @Override
+    public boolean isRoot(N node) {
+        return monitored("isRoot", () -> {
+            final N nodeRecord = fetch(node);
+
+            return 0 == nodeRecord.getLevel();
+        });
+    }
+
+    /**
+     * Rebuilds the left, right and level values of all nodes from an adjacency list, e.g. to migrate an existing
+     * tree into the nested set model or to repair a corrupted tree. The column parentField must contain the ID of the
+     * parent of each node, or null for the root. Children are numbered in the order defined by siblingOrder. If a
+     * scope field is defined, every root starts a tree of its own, whose scope must already be set for all its nodes.
+     * Each scope must contain a single root and every node must be in the scope of its parent.
+     * <p>
+     * The adjacency list is read in a single pass and numbered depth-first without recursion. The whole state is kept
+     * in primitive arrays, so large trees can be rebuilt with a bounded amount of memory. IDs of an integral type are
+     * held as long values and looked up by binary search, which takes about 100 bytes per node at most. Other IDs are
+     * held as objects and looked up in a hash map, which adds the size of an ID and about 50 bytes per node. The
+     * new values are written with batched updates.
+     *
+     * @param parentField  column containing the ID of the parent node
+     * @param siblingOrder order of the children of a node
+     */
+    public void rebuild(Field<T> parentField, OrderField<?>... siblingOrder) {
+        locked("rebuild", null, () -> {
+            final boolean scoped = getScopeField() != null;
+            final AdjacencyList ids = isIntegral(getIdField().getType())
+                    ? new IntegralAdjacencyList(getIdField().getDataType())
+                    : new ObjectAdjacencyList();
+            Object[] scopes = scoped ? new Object[BATCH_SIZE] : null;
+            int size = 0;
+
+            final List<Field<?>> fields = new ArrayList<>(List.of(getIdField(), parentField));
+            if (scoped) {
+                fields.add(getScopeField());
+            }
+
+            try (Cursor<Record> cursor = ctx().select(fields)
+                    .from(getTable())
+                    .orderBy(siblingOrder)
+                    .fetchSize(getFetchSize())
+                    .fetchLazy()) {
+
+                for (Record record : cursor) {
+                    if (scoped) {
+                        if (size == scopes.length) {
+                            scopes = Arrays.copyOf(scopes, size * 2);
+                        }
+                        scopes[size] = record.get(getScopeField());
+                    }
+
+                    ids.add(record.get(getIdField()), record.get(parentField));
+                    size++;
+                }
+            }
+            ids.index();
+
+            // link the children of each node in sibling order, -1 marks the end of a list
+            final int[] firstChild = new int[size];
+            final int[] lastChild = new int[size];
+            final int[] nextSibling = new int[size];
+            Arrays.fill(firstChild, -1);
+            Arrays.fill(nextSibling, -1);
+
+            final Set<Object> rootScopes = new HashSet<>();
+            int firstRoot = -1;
+            int lastRoot = -1;
+
+            for (int i = 0; i < size; i++) {
+                if (!ids.hasParent(i)) {
+                    if (firstRoot == -1) {
+                        firstRoot = i;
+                    } else if (!scoped) {
+                        throw new IllegalStateException("Tree has more than one root.");
+                    } else {
+                        nextSibling[lastRoot] = i;
+                    }
+                    if (scoped && !rootScopes.add(scopes[i])) {
+                        throw new IllegalStateException("Tree with scope " + scopes[i] + " has more than one root.");
+                    }
+                    lastRoot = i;
+                    continue;
+                }
+
+                final int parent = ids.parentIndex(i);
+
+                if (parent == -1) {
+                    throw new NodeNotFoundException("Parent with id " + ids.parentId(i) + " of node with id "
+                            + ids.id(i) + " not found.");
+                }
+                if (scoped && !Objects.equals(scopes[i], scopes[parent])) {
+                    throw new IllegalStateException("Node with id " + ids.id(i) + " is not in the tree of its parent "
+                            + "with id " + ids.parentId(i) + ".");
+                }
+
+                if (firstChild[parent] == -1) {
+                    firstChild[parent] = i;
+                } else {
+                    nextSibling[lastChild[parent]] = i;
+                }
+                lastChild[parent] = i;
+            }
+
+            ids.releaseParents();
+            scopes = null;
+
+            if (size == 0) {
+                return;
+            }
+            if (firstRoot == -1) {
+                throw new IllegalStateException("Tree has no root.");
+            }
+
+            final long[] left = new long[size];
+            final long[] right = new long[size];
+            final int[] level = new int[size];
+            final int[] stack = new int[size];
+            final long gapSize = getGapSize();
+            int numbered = 0;
+
+            for (int root = firstRoot; root != -1; root = nextSibling[root]) {
+                int depth = 0;
+                long value = 1;
+
+                left[root] = value;
+                value += gapSize;
+                stack[depth++] = root;
+                numbered++;
+
+                // firstChild is reused as pointer to the next child to be visited
+                while (depth > 0) {
+                    final int node = stack[depth - 1];
+                    final int child = firstChild[node];
+
+                    if (child != -1) {
+                        firstChild[node] = nextSibling[child];
+                        left[child] = value;
+                        value += gapSize;
+                        level[child] = depth;
+                        stack[depth++] = child;
+                        numbered++;
+                    } else {
+                        right[node] = value;
+                        value += gapSize;
+                        depth--;
+                    }
+                }
+            }
+
+            if (numbered != size) {
+                throw new IllegalStateException((size - numbered) + " nodes are not connected to the root.");
+            }
+
+            final Query update = ctx().update(getTable())
+                    .set(getLeftField(), (Long) null)
+                    .set(getRightField(), (Long) null)
+                    .set(getLevelField(), (Long) null)
+                    .where(getIdField().eq((T) null));
+
+            for (int from = 0; from < size; from += BATCH_SIZE) {
+                final BatchBindStep batch = ctx().batch(update);
+
+                for (int i = from; i < Math.min(from + BATCH_SIZE, size); i++) {
+                    batch.bind(left[i], right[i], (long) level[i], ids.id(i));
+                }
+                batch.execute();
+            }
+        });
+    }
+
+    /**
+     * Executes code in a single transaction. All statements of this dao which are executed by the current thread
+     * within the given code take part in this transaction, so multiple operations can be committed or rolled back
+     * together. The transaction is committed when the code returns and rolled back when it throws an exception. If a
+     * transaction is already running, a nested transaction is started, which is supported by jOOQ using savepoints.
+     * <p>
+     * The transaction is opened by the transaction provider of the jOOQ configuration, e.g. the one of Spring, so it
+     * also takes part in a transaction which has been opened outside of this dao.
+     *
+     * @param code code to be executed
+     * @param <X>  result type of the code
+     * @return result of the code
+     */
+    public <X> X transactionResult(Supplier<X> code) {
+        final boolean outermost = currentTransaction.get() == null;
+
+        if (outermost) {
+            afterTransaction.set(new ArrayList<>());
+        }
+        try {
+            return ctx().transactionResult(transaction -> {
+                final Configuration previous = currentTransaction.get();
+
+                currentTransaction.set(transaction);
+                try {
+                    return code.get();
+                } finally {
+                    if (previous == null) {
+                        currentTransaction.remove();
+                    } else {
+                        currentTransaction.set(previous);
+                    }
+                }
+            });
+        } finally {
+            if (outermost) {
+                final List<Runnable> actions = afterTransaction.get();
+
+                afterTransaction.remove();
+                actions.forEach(Runnable::run);
+            }
+        }
+    }
+
+    /**
+     * Runs an action after the outermost transaction started by {@link #transactionResult(Supplier)} on the current
+     * thread has been committed or rolled back, e.g. to drop cached data which other threads could not see before. If
+     * no such transaction is running, the action is run immediately.
+     *
+     * @param action action to be run
+     */
+    public void afterTransaction(Runnable action) {
+        final List<Runnable> actions = afterTransaction.get();
+
+        if (actions == null) {
+            action.run();
+        } else {
+            actions.add(action);
+        }
+    }
+
+    /**
+     * Returns true, when sparse numbering is enabled.
+     *
+     * @return true, when the gap size is greater than 1
+     */
+    private boolean isSparse() {
+        return getGapSize() > 1;
+    }
+
+    /**
+     * Inserts a node at a given position when sparse numbering is enabled. The node takes free values between the
+     * neighbouring left and right values. If there are not enough free values, the smallest enclosing subtree is
+     * renumbered first.
+     *
+     * @param existingNode parent of the new node or its sibling, depending on the position
+     * @param node         node which is to be inserted
+     * @param position     position of the new node relative to the existing node
+     */
+    private void insertSparse(N existingNode, N node, Position position) {
+        final boolean asChild = position == Position.FIRST_CHILD || position == Position.LAST_CHILD;
+
+        N existingRecord = resolve(existingNode);
+
+        if (!asChild) {
+            rejectRoot(existingRecord);
+        }
+
+        N parentRecord = asChild ? existingRecord : fetchParent(existingRecord);
+        N container = parentRecord;
+
+        while (true) {
+
+            final long lower;
+            final long upper;
+
+            switch (position) {
+                case FIRST_CHILD:
+                    lower = parentRecord.getLeft();
+                    upper = findNextLeft(parentRecord, parentRecord.getLeft(), parentRecord.getRight());
+                    break;
+                case LAST_CHILD:
+                    lower = findPreviousRight(parentRecord, parentRecord.getLeft(), parentRecord.getRight());
+                    upper = parentRecord.getRight();
+                    break;
+                case PREV_SIBLING:
+                    lower = findPreviousRight(parentRecord, parentRecord.getLeft(), existingRecord.getLeft());
+                    upper = existingRecord.getLeft();
+                    break;
+                default:
+                    lower = existingRecord.getRight();
+                    upper = findNextLeft(parentRecord, existingRecord.getRight(), parentRecord.getRight());
+                    break;
+            }
+
+            // at least two free values are needed, the new node leaves some room on both sides and for children
+            if (upper - lower >= 3) {
+                final long third = (upper - lower) / 3;
+
+                node.setLeft(lower + third);
+                node.setRight(upper - third);
+                node.setLevel(parentRecord.getLevel() + 1);
+                copyScope(parentRecord, node);
+
+                insert(node);
+                return;
+            }
+
+            container = renumber(container);
+            parentRecord = fetch(parentRecord);
+            existingRecord = asChild ? parentRecord : fetch(existingRecord);
+        }
+    }
+
+    /**
+     * Returns the smallest left value between the from and the to value. If there is none, the to value is returned.
+     *
+     * @param node node of the tree to be searched
+     * @param from lower bound (exclusive)
+     * @param to   upper bound (exclusive)
+     * @return smallest left value
+     */
+    private long findNextLeft(N node, Long from, Long to) {
+        final Long left = ctx().select(DSL.min(getLeftField()))
+                .from(getTable())
+                .where(getLeftField().greaterThan(from))
+                .and(getLeftField().lessThan(to))
+                .and(inTreeOf(node))
+                .fetchOne(0, Long.class);
+
+        return left != null ? left : to;
+    }
+
+    /**
+     * Returns the greatest right value between the from and the to value. If there is none, the from value is
+     * returned.
+     *
+     * @param node node of the tree to be searched
+     * @param from lower bound (exclusive)
+     * @param to   upper bound (exclusive)
+     * @return greatest right value
+     */
+    private long findPreviousRight(N node, Long from, Long to) {
+        final Long right = ctx().select(DSL.max(getRightField()))
+                .from(getTable())
+                .where(getRightField().greaterThan(from))
+                .and(getRightField().lessThan(to))
+                .and(inTreeOf(node))
+                .fetchOne(0, Long.class);
+
+        return right != null ? right : from;
+    }
+
+    /**
+     * Distributes the descendants of a node evenly between the left and right value of the node, so that there are
+     * at least two free values between all neighbouring values afterwards. If the node does not provide enough
+     * values, its parent is renumbered instead. The range of the root is extended, if necessary.
+     *
+     * @param node node whose descendants are to be renumbered
+     * @return node whose descendants have actually been renumbered
+     */
+    private N renumber(N node) {
+        N nodeRecord = fetch(node);
+
+        while (true) {
+            final Result<Record3<T, Long, Long>> descendants = ctx()
+                    .select(getIdField(), getLeftField(), getRightField())
+                    .from(getTable())
+                    .where(getLeftField().greaterThan(nodeRecord.getLeft()))
+                    .and(getRightField().lessThan(nodeRecord.getRight()))
+                    .and(inTreeOf(nodeRecord))
+                    .orderBy(getLeftField().asc())
+                    .fetch();
+
+            final long slots = 2L * descendants.size() + 1;
+            long right = nodeRecord.getRight();
+
+            if ((right - nodeRecord.getLeft()) / slots < 3) {
+                if (nodeRecord.getLevel() > 0) {
+                    nodeRecord = fetchParent(nodeRecord);
+                    continue;
+                }
+                right = nodeRecord.getLeft() + slots * Math.max(getGapSize(), 3L);
+            }
+
+            final long step = (right - nodeRecord.getLeft()) / slots;
+            final long[] newLeft = new long[descendants.size()];
+            final long[] newRight = new long[descendants.size()];
+            final Deque<Integer> open = new ArrayDeque<>();
+            long value = nodeRecord.getLeft();
+
+            // assign the new values in the order of the old values, closing nodes before their right neighbours open
+            for (int i = 0; i < descendants.size(); i++) {
+                while (!open.isEmpty() && descendants.get(open.peek()).value3() < descendants.get(i).value2()) {
+                    newRight[open.pop()] = value += step;
+                }
+                newLeft[i] = value += step;
+                open.push(i);
+            }
+            while (!open.isEmpty()) {
+                newRight[open.pop()] = value += step;
+            }
+
+            final BatchBindStep batch = ctx().batch(ctx().update(getTable())
+                    .set(getLeftField(), (Long) null)
+                    .set(getRightField(), (Long) null)
+                    .where(getIdField().eq((T) null)));
+
+            batch.bind(nodeRecord.getLeft(), right, nodeRecord.getId());
+            for (int i = 0; i < descendants.size(); i++) {
+                batch.bind(newLeft[i], newRight[i], descendants.get(i).value1());
+            }
+            recordShift(Arrays.stream(batch.execute()).sum());
+
+            return nodeRecord;
+        }
+    }
+
+    /**
+     * Throws an exception, if a sibling is to be added to a root or a node is to be moved next to it. A root always
+     * starts at the left value 1, so a sibling would overlap it.
+     *
+     * @param node existing node the sibling is to be added or moved to
+     */
+    private void rejectRoot(N node) {
+        if (node.getLevel() == 0) {
+            throw new IllegalArgumentException("Cannot add a sibling to the root node with id " + node.getId() + ".");
+        }
+    }
+
+    /**
+     * Reads the parent of a node from the database.
+     *
+     * @param node node whose parent is to be read
+     * @return parent node
+     */
+    private N fetchParent(N node) {
+        final List<N> parents = getAncestors(node, 1);
+
+        if (parents.isEmpty()) {
+            throw new IllegalArgumentException("Node with id " + node.getId() + " has no parent.");
+        }
+        return parents.get(0);
+    }
+
+    /**
+     * Returns the scope field with an unspecific type, so that it can be compared to arbitrary values.
+     *
+     * @return scope field
+     */
+    @SuppressWarnings("unchecked")
+    private Field<Object> scopeField() {
+        return (Field<Object>) getScopeField();
+    }
+
+    /**
+     * Returns true, if IDs of a type can be held as long values.
+     *
+     * @param type type of the IDs
+     * @return true, for integral number types
+     */
+    private static boolean isIntegral(Class<?> type) {
+        return type == Long.class || type == Integer.class || type == Short.class || type == Byte.class;
+    }
+
+    /**
+     * Returns the value of the scope field of a node.
+     *
+     * @param node node whose scope is to be determined
+     * @return value of the scope field
+     */
+    private Object scopeOf(N node) {
+        return ctx().newRecord(getTable(), node).get(getScopeField());
+    }
+
+    /**
+     * Returns a condition which restricts a statement to the tree of a given node. If no scope field is defined, the
+     * condition is always true.
+     *
+     * @param node node whose tree is affected
+     * @return condition for the tree of the node
+     */
+    private Condition inTreeOf(N node) {
+        if (getScopeField() == null) {
+            return DSL.noCondition();
+        }
+
+        final Object scope = scopeOf(node);
+
+        return scope == null ? scopeField().isNull() : scopeField().eq(scope);
+    }
+
+    /**
+     * Assigns the scope of an existing node to a new node, so that both belong to the same tree.
+     *
+     * @param source node whose scope is copied
+     * @param target new node
+     */
+    private void copyScope(N source, N target) {
+        if (getScopeField() == null) {
+            return;
+        }
+
+        final R record = ctx().newRecord(getTable(), target);
+        record.set(scopeField(), scopeOf(source));
+        record.into(target);
+    }
+
+    /**
+     * Returns a condition which restricts the level to a range relative to the level of the node, whose row is joined
+     * as the given alias. A single level is compared for equality, so the condition can be satisfied by a range scan
+     * of an index on the level and the left value.
+     *
+     * @param nodeTable alias of the table, which is used for the row of the node
+     * @param from      lowest level relative to the level of the node
+     * @param to        highest level relative to the level of the node
+     * @return condition for the level
+     */
+    private Condition levelRange(Table<R> nodeTable, long from, long to) {
+        final Field<Long> level = nodeTable.field(getLevelField());
+
+        if (from == to) {
+            return getLevelField().eq(level.add(from));
+        }
+        return getLevelField().between(level.add(from), level.add(to));
+    }
+
+    /**
+     * Returns a condition which restricts a statement to the tree of the node, whose row is joined as the given alias.
+     * If no scope field is defined, the condition is always true.
+     *
+     * @param nodeTable alias of the table, which is used for the row of the node
+     * @return condition for the tree of the joined node
+     */
+    private Condition inTreeOf(Table<R> nodeTable) {
+        return getScopeField() == null ? DSL.noCondition() : scopeField().eq(nodeTable.field(scopeField()));
+    }
+
+    /**
+     * Returns a condition which excludes nodes marked as deleted. If no deleted field is defined, the condition is
+     * always true.
+     *
+     * @param table table or alias whose rows are filtered
+     * @return condition for nodes which are not deleted
+     */
+    private Condition notDeleted(Table<R> table) {
+        if (getDeletedField() == null) {
+            return DSL.noCondition();
+        }
+        return table.field(getDeletedField()).isDistinctFrom(true);
+    }
+
+    /**
+     * Returns the order of the nodes in the table. If a scope field is defined, the trees are sorted by their scope.
+     *
+     * @return fields to sort by
+     */
+    private List<OrderField<?>> treeOrder() {
+        if (getScopeField() == null) {
+            return List.of(getLeftField().asc());
+        }
+        return List.of(getScopeField().asc(), getLeftField().asc());
+    }
+
+    /**
+     * Closes multiple gaps of a tree by a single statement. Each left and right value is decreased by the total width
+     * of all gaps below it, which is looked up by a CASE expression over the cumulative widths.
+     *
+     * @param tree   condition which restricts the statement to the affected tree
+     * @param ranges left and right values of the gaps, sorted and not overlapping
+     */
+    private void closeGaps(Condition tree, long[][] ranges) {
+        final long[] cumulativeWidth = new long[ranges.length];
+        long width = 0;
+
+        for (int i = 0; i < ranges.length; i++) {
+            width += ranges[i][1] - ranges[i][0] + 1;
+            cumulativeWidth[i] = width;
+        }
+
+        recordShift(ctx().update(getTable())
+                .set(getLeftField(), closeGaps(getLeftField(), ranges, cumulativeWidth))
+                .set(getRightField(), closeGaps(getRightField(), ranges, cumulativeWidth))
+                .where(getRightField().greaterThan(ranges[0][1]))
+                .and(tree)
+                .execute());
+    }
+
+    /**
+     * Creates the expression for the new value of a field when gaps are closed. The gaps are tested from right to
+     * left, so the first matching gap is the closest one below the value.
+     *
+     * @param field           left or right field
+     * @param ranges          left and right values of the gaps, sorted and not overlapping
+     * @param cumulativeWidth total width of each gap and all gaps below it
+     * @return new value of the field
+     */
+    private Field<Long> closeGaps(Field<Long> field, long[][] ranges, long[] cumulativeWidth) {
+        final int last = ranges.length - 1;
+        CaseConditionStep<Long> value = DSL.when(field.greaterThan(ranges[last][1]),
+                field.sub(cumulativeWidth[last]));
+
+        for (int i = last - 1; i >= 0; i--) {
+            value = value.when(field.greaterThan(ranges[i][1]), field.sub(cumulativeWidth[i]));
+        }
+        return value.otherwise(field);
+    }
+
+    /**
+     * Creates a gap on the right and left side of a tree so that a new node can be inserted there.
+     * The gap always has a size of 2.
+     *
+     * @param tree       condition which restricts the shift to the affected tree
+     * @param startValue start value for the creation of the gap
+     */
+    private void shiftNodes(Condition tree, Long startValue) {
+        shiftNodes(tree, startValue, 2L);
+    }
 
     /**
      * Creates a gap on the right and left side of a tree so that a new node can be inserted there.
-     * The size of the gap is defined by the sizeOfGap.
+     * The size of the gap is defined by the sizeOfGap. Left and right values are shifted by a single statement. As the
+     * left value of a node is always lower than its right value, only nodes whose right value is greater than or equal
+     * to the from value are affected.
      *
+     * @param tree      condition which restricts the shift to the affected tree
+     * @see #isSingleStatementShift()
      * @param from      start value for the gap
      * @param sizeOfGap size of gap
      */
-    private void shiftNodes(Long from, Long sizeOfGap) {
-        shiftLeftNodes(from, sizeOfGap);
-        shiftRightNodes(from, sizeOfGap);
+    private void shiftNodes(Condition tree, Long from, Long sizeOfGap) {
+        if (!isSingleStatementShift()) {
+            recordShift(ctx().update(getTable())
+                    .set(getLeftField(), getLeftField().add(sizeOfGap))
+                    .where(getLeftField().greaterOrEqual(from))
+                    .and(tree)
+                    .execute());
+            recordShift(ctx().update(getTable())
+                    .set(getRightField(), getRightField().add(sizeOfGap))
+                    .where(getRightField().greaterOrEqual(from))
+                    .and(tree)
+                    .execute());
+            return;
+        }
+
+        recordShift(ctx().update(getTable())
+                .set(getLeftField(), DSL.when(getLeftField().greaterOrEqual(from), getLeftField().add(sizeOfGap))
+                        .otherwise(getLeftField()))
+                .set(getRightField(), getRightField().add(sizeOfGap))
+                .where(getRightField().greaterOrEqual(from))
+                .and(tree)
+                .execute());
     }
 
     /**
-     * Adds an increment to the left and right side of all nodes, who live between the from and to range.
+     * Executes a public operation and reports its statistics to the monitor. Operations which are called by another
+     * operation are not reported separately.
      *
-     * @param from      start value
-     * @param to        end value
-     * @param increment incrementation
+     * @param operation name of the operation
+     * @param action    implementation of the operation
+     * @param <X>       result type of the operation
+     * @return result of the operation
      */
-    private void shiftNodes(Long from, Long to, Long increment) {
-        shiftLeftNodes(from, to, increment);
-        shiftRightNodes(from, to, increment);
+    private <X> X monitored(String operation, Supplier<X> action) {
+        if (!indexesChecked.get() && isIndexCheckEnabled()) {
+            checkIndexes();
+        }
+
+        final NestedSetMonitor monitor = getMonitor();
+
+        if (monitor == NestedSetMonitor.NONE || currentOperation.get() != null) {
+            return action.get();
+        }
+
+        final OperationRecorder recorder = new OperationRecorder(operation);
+        final NestedSetMonitor.Observation observation = monitor.start(operation);
+        Throwable failure = null;
+
+        currentOperation.set(recorder);
+        try {
+            return action.get();
+        } catch (RuntimeException | Error e) {
+            failure = e;
+            throw e;
+        } finally {
+            currentOperation.remove();
+            observation.stop(recorder.finish(failure));
+        }
     }
 
     /**
-     * Adds an increment to all nodes whose left value is greater than or equal to the from value.
+     * Executes a public operation without result and reports its statistics to the monitor.
      *
-     * @param from      start value of the left side
-     * @param increment increment, which will be added to the left side of all nodes, whose left value is greater or
-     *                  equal to the start value.
+     * @param operation name of the operation
+     * @param action    implementation of the operation
      */
-    private void shiftLeftNodes(Long from, Long increment) {
-        ctx().update(this.getTable())
-                .set(this.getLeftField(), this.getLeftField().add(increment))
-                .where(this.getLeftField().greaterOrEqual(from))
-                .execute();
+    private void monitored(String operation, Runnable action) {
+        monitored(operation, () -> {
+            action.run();
+            return null;
+        });
     }
 
     /**
-     * Adds an increment to all nodes whose left value is between from and to value.
+     * Executes a public modifying operation using the lock strategy and reports its statistics to the monitor.
      *
-     * @param from      start value
-     * @param to        end value
-     * @param increment increment, which will be added to the left side of all nodes
+     * @param operation name of the operation
+     * @param nodes     nodes whose trees are modified, or null if all trees are modified
+     * @param action    implementation of the operation
+     * @param <X>       result type of the operation
+     * @return result of the operation
      */
-    private void shiftLeftNodes(Long from, Long to, Long increment) {
-        ctx().update(this.getTable())
-                .set(this.getLeftField(), this.getLeftField().add(increment))
-                .where(this.getLeftField().between(from, to))
-                .execute();
+    private <X> X locked(String operation, Collection<N> nodes, Supplier<X> action) {
+        return monitored(operation, () -> {
+            final LockStrategy lockStrategy = getLockStrategy();
+
+            if (lockStrategy == LockStrategy.NONE) {
+                return action.get();
+            }
+            return lockStrategy.execute(new TreeLockTarget(nodes), action);
+        });
     }
 
     /**
-     * Adds an increment to all nodes whose right value is greater than or equal to the from value.
+     * Executes a public modifying operation without result using the lock strategy.
      *
-     * @param from      start value of the right side
-     * @param increment increment, which will be added to the right side of all nodes, whose right value is greater or
-     *                  equal to the start value.
+     * @param operation name of the operation
+     * @param nodes     nodes whose trees are modified, or null if all trees are modified
+     * @param action    implementation of the operation
      */
-    private void shiftRightNodes(Long from, Long increment) {
-        ctx().update(this.getTable())
-                .set(this.getRightField(), this.getRightField().add(increment))
-                .where(this.getRightField().greaterOrEqual(from))
-                .execute();
+    private void locked(String operation, Collection<N> nodes, Runnable action) {
+        locked(operation, nodes, () -> {
+            action.run();
+            return null;
+        });
     }
 
     /**
-     * Adds an increment to all nodes whose right value is between from and to value.
+     * Records the number of rows affected by a statement which shifted existing nodes, if the current operation is
+     * monitored.
      *
-     * @param from      start value
-     * @param to        end value
-     * @param increment increment, which will be added to the left side of all nodes
+     * @param rows number of affected rows
      */
-    private void shiftRightNodes(Long from, Long to, Long increment) {
-        ctx().update(this.getTable())
-                .set(this.getRightField(), this.getRightField().add(increment))
-                .where(this.getRightField().between(from, to))
-                .execute();
+    private void recordShift(int rows) {
+        final OperationRecorder operation = currentOperation.get();
+
+        if (operation != null) {
+            operation.rowsShifted.add(rows);
+        }
+    }
+
+    /**
+     * Collects the statistics of a running operation.
+     */
+    private static final class OperationRecorder {
+
+        private final String operation;
+
+        private final long start = System.nanoTime();
+
+        private final List<Integer> rowsShifted = new ArrayList<>();
+
+        private int statements;
+
+        private OperationRecorder(String operation) {
+            this.operation = operation;
+        }
+
+        private OperationStatistics finish(Throwable failure) {
+            return new OperationStatistics(operation, Duration.ofNanos(System.nanoTime() - start), statements,
+                    rowsShifted, failure);
+        }
+    }
+
+    /**
+     * Trees affected by a modifying operation, which are passed to the lock strategy.
+     */
+    private final class TreeLockTarget implements LockTarget {
+
+        private final Collection<N> nodes;
+
+        private TreeLockTarget(Collection<N> nodes) {
+            this.nodes = nodes;
+        }
+
+        @Override
+        public DSLContext ctx() {
+            return AbstractNestedSetDao.this.ctx();
+        }
+
+        @Override
+        public Table<?> getTable() {
+            return AbstractNestedSetDao.this.getTable();
+        }
+
+        @Override
+        public Field<?> getIdField() {
+            return AbstractNestedSetDao.this.getIdField();
+        }
+
+        @Override
+        public Field<?> getScopeField() {
+            return AbstractNestedSetDao.this.getScopeField();
+        }
+
+        @Override
+        public Condition roots() {
+            final Condition roots = getLevelField().eq(0L);
+
+            if (nodes == null || getScopeField() == null) {
+                return roots;
+            }
+
+            // the passed nodes are not resolved yet, so their scope is read by a subquery
+            return roots.and(scopeField().in(DSL.select(scopeField())
+                    .from(AbstractNestedSetDao.this.getTable())
+                    .where(getIdField().in(ids()))));
+        }
+
+        @Override
+        public List<Object> scopes() {
+            if (getScopeField() == null) {
+                return Collections.singletonList(null);
+            }
+
+            return ctx().selectDistinct(scopeField())
+                    .from(AbstractNestedSetDao.this.getTable())
+                    .where(nodes == null ? getLevelField().eq(0L) : getIdField().in(ids()))
+                    .fetch(scopeField());
+        }
+
+        @Override
+        public <X> X inTransaction(Supplier<X> operation) {
+            return transactionResult(operation);
+        }
+
+        private List<T> ids() {
+            final List<T> ids = new ArrayList<>(nodes.size());
+
+            for (N node : nodes) {
+                ids.add(node.getId());
+            }
+            return ids;
+        }
+    }
+
+    /**
+     * Position of a new node relative to an existing node.
+     */
+    private enum Position {
+        FIRST_CHILD,
+        LAST_CHILD,
+        PREV_SIBLING,
+        NEXT_SIBLING
+    }
+
+    /**
+     * IDs and parent IDs of the nodes read by {@link #rebuild(Field, OrderField[])} in reading order. After all nodes
+     * have been added, the index of the parent of each node can be looked up.
+     */
+    private interface AdjacencyList {
+
+        void add(Object id, Object parentId);
+
+        /**
+         * Prepares the lookup of the parents, after all nodes have been added.
+         */
+        void index();
+
+        Object id(int index);
+
+        Object parentId(int index);
+
+        boolean hasParent(int index);
+
+        /**
+         * Returns the index of the parent of a node.
+         *
+         * @param index index of the node
+         * @return index of the parent, or -1 if the parent has not been read
+         */
+        int parentIndex(int index);
+
+        /**
+         * Releases the parent IDs and the lookup, which are not needed for numbering the nodes.
+         */
+        void releaseParents();
+    }
+
+    /**
+     * Adjacency list of integral IDs, which are held as long values. The parents are looked up by binary search in
+     * the sorted IDs, so no ID is boxed.
+     */
+    private static final class IntegralAdjacencyList implements AdjacencyList {
+
+        private final DataType<?> type;
+
+        private long[] ids = new long[BATCH_SIZE];
+
+        private long[] parentIds = new long[BATCH_SIZE];
+
+        private boolean[] hasParent = new boolean[BATCH_SIZE];
+
+        private long[] sortedIds;
+
+        /**
+         * Index of the node of each sorted ID
+         */
+        private int[] indexes;
+
+        private int size;
+
+        private IntegralAdjacencyList(DataType<?> type) {
+            this.type = type;
+        }
+
+        @Override
+        public void add(Object id, Object parentId) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                parentIds = Arrays.copyOf(parentIds, size * 2);
+                hasParent = Arrays.copyOf(hasParent, size * 2);
+            }
+
+            ids[size] = ((Number) id).longValue();
+            if (parentId != null) {
+                parentIds[size] = ((Number) parentId).longValue();
+                hasParent[size] = true;
+            }
+            size++;
+        }
+
+        @Override
+        public void index() {
+            sortedIds = Arrays.copyOf(ids, size);
+            Arrays.sort(sortedIds);
+            indexes = new int[size];
+
+            for (int i = 0; i < size; i++) {
+                indexes[Arrays.binarySearch(sortedIds, ids[i])] = i;
+            }
+        }
+
+        @Override
+        public Object id(int index) {
+            return type.convert(ids[index]);
+        }
+
+        @Override
+        public Object parentId(int index) {
+            return hasParent[index] ? type.convert(parentIds[index]) : null;
+        }
+
+        @Override
+        public boolean hasParent(int index) {
+            return hasParent[index];
+        }
+
+        @Override
+        public int parentIndex(int index) {
+            final int position = Arrays.binarySearch(sortedIds, parentIds[index]);
+
+            return position < 0 ? -1 : indexes[position];
+        }
+
+        @Override
+        public void releaseParents() {
+            parentIds = null;
+            hasParent = null;
+            sortedIds = null;
+            indexes = null;
+        }
+    }
+
+    /**
+     * Adjacency list of IDs of any type, whose parents are looked up in a hash map.
+     */
+    private static final class ObjectAdjacencyList implements AdjacencyList {
+
+        private final Map<Object, Integer> indexes = new HashMap<>();
+
+        private Object[] ids = new Object[BATCH_SIZE];
+
+        private Object[] parentIds = new Object[BATCH_SIZE];
+
+        private int size;
+
+        @Override
+        public void add(Object id, Object parentId) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                parentIds = Arrays.copyOf(parentIds, size * 2);
+            }
+
+            ids[size] = id;
+            parentIds[size] = parentId;
+            indexes.put(id, size++);
+        }
+
+        @Override
+        public void index() {
+        }
+
+        @Override
+        public Object id(int index) {
+            return ids[index];
+        }
+
+        @Override
+        public Object parentId(int index) {
+            return parentIds[index];
+        }
+
+        @Override
+        public boolean hasParent(int index) {
+            return parentIds[index] != null;
+        }
+
+        @Override
+        public int parentIndex(int index) {
+            final Integer parent = indexes.get(parentIds[index]);
+
+            return parent == null ? -1 : parent;
+        }
+
+        @Override
+        public void releaseParents() {
+            parentIds = null;
+            indexes.clear();
+        }
     }
 }
@@ -0,0 +1,442 @@
+/*
+ * Copyright 2022. Werner Elsler
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.wernz0r.nestedsets4jooq.dao;
+
+import io.github.wernz0r.nestedsets4jooq.model.NestedSetNode;
+import io.github.wernz0r.nestedsets4jooq.model.NestedSetTree;
+import org.jooq.Field;
+import org.jooq.OrderField;
+import org.jooq.Record;
+import org.jooq.RecordMapper;
+import org.jooq.SelectField;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Asynchronous variant of a nested set dao, which executes all operations of the decorated dao on an executor. Reads
+ * complete with their result, streaming reads are returned as cold {@link Flow.Publisher}s, which can be adapted to
+ * Reactive Streams, e.g. by {@code org.reactivestreams.FlowAdapters}. Every modifying operation runs in a single
+ * transaction.
+ * <p>
+ * The decorated dao accesses the database by JDBC, so every operation occupies a thread of the executor while it is
+ * executed. The executor should be dedicated to blocking database access and sized according to the connection pool,
+ * so callers on a reactive stack are never blocked themselves.
+ * <p>
+ * Every public operation of {@link AbstractNestedSetDao} on the nodes of the tree has a counterpart with the same
+ * name and parameters, which is enforced by a test. The following methods are deliberately excluded, as they do not
+ * access the database or must run on the calling thread, and are called on the decorated dao instead: the field
+ * getters, {@code isGapless()}, {@code configuration()}, {@code checkIndexes()}, {@code transactionResult(...)} and
+ * {@code afterTransaction(...)}. The generic methods inherited from jOOQ's DAOImpl are not mirrored either.
+ *
+ * @param <N> Implementation of NestedSetNode
+ * @param <T> Type of the ID of the nodes
+ */
+public class AsyncNestedSetDao<N extends NestedSetNode<?, T>, T> {
+
+    private final AbstractNestedSetDao<?, N, ?, T> delegate;
+
+    private final Executor executor;
+
+    /**
+     * Constructor
+     *
+     * @param delegate dao which executes the operations
+     * @param executor executor for the blocking database access
+     */
+    public AsyncNestedSetDao(AbstractNestedSetDao<?, N, ?, T> delegate, Executor executor) {
+        this.delegate = delegate;
+        this.executor = executor;
+    }
+
+    public CompletionStage<N> fetch(N node) {
+        return read(() -> delegate.fetch(node));
+    }
+
+    public CompletionStage<Void> delete(N node) {
+        return write(() -> delegate.delete(node));
+    }
+
+    public CompletionStage<Void> deleteAll(Collection<N> nodes) {
+        return write(() -> delegate.deleteAll(nodes));
+    }
+
+    public CompletionStage<List<N>> findAll() {
+        return read(delegate::findAll);
+    }
+
+    public CompletionStage<List<Record>> findAll(SelectField<?>... fields) {
+        return read(() -> delegate.findAll(fields));
+    }
+
+    public <E> CompletionStage<List<E>> findAll(RecordMapper<? super Record, E> mapper, SelectField<?>... fields) {
+        return read(() -> delegate.findAll(mapper, fields));
+    }
+
+    /**
+     * Returns all nodes as publisher. The cursor is opened on the first request and holds a connection of the pool
+     * until the subscriber has received all nodes or cancels the subscription, so slow subscribers should request in
+     * large batches or cancel early.
+     *
+     * @return publisher of all nodes sorted by tree and left value
+     */
+    public Flow.Publisher<N> streamAll() {
+        return publish(delegate::streamAll);
+    }
+
+    public CompletionStage<Void> insertAsRoot(N node) {
+        return write(() -> delegate.insertAsRoot(node));
+    }
+
+    public CompletionStage<Void> insertAsFirstChild(N parent, N child) {
+        return write(() -> delegate.insertAsFirstChild(parent, child));
+    }
+
+    public CompletionStage<Void> insertAsLastChild(N parent, N child) {
+        return write(() -> delegate.insertAsLastChild(parent, child));
+    }
+
+    public CompletionStage<Void> insertAsPrevSibling(N existingNode, N sibling) {
+        return write(() -> delegate.insertAsPrevSibling(existingNode, sibling));
+    }
+
+    public CompletionStage<Void> insertAsNextSibling(N existingNode, N sibling) {
+        return write(() -> delegate.insertAsNextSibling(existingNode, sibling));
+    }
+
+    public CompletionStage<Void> insertSubtree(N parent, NestedSetTree<N> subtree) {
+        return write(() -> delegate.insertSubtree(parent, subtree));
+    }
+
+    public CompletionStage<Boolean> hasChildren(N node) {
+        return read(() -> delegate.hasChildren(node));
+    }
+
+    public CompletionStage<Boolean> isRoot(N node) {
+        return read(() -> delegate.isRoot(node));
+    }
+
+    public CompletionStage<List<N>> getChildren(N node) {
+        return read(() -> delegate.getChildren(node));
+    }
+
+    public CompletionStage<Map<T, List<N>>> getChildrenBatch(Collection<N> nodes) {
+        return read(() -> delegate.getChildrenBatch(nodes));
+    }
+
+    public CompletionStage<Long> countChildren(N node) {
+        return read(() -> delegate.countChildren(node));
+    }
+
+    public CompletionStage<Map<T, Long>> countChildrenBatch(Collection<N> nodes) {
+        return read(() -> delegate.countChildrenBatch(nodes));
+    }
+
+    public CompletionStage<List<N>> getSiblings(N node) {
+        return read(() -> delegate.getSiblings(node));
+    }
+
+    public CompletionStage<N> getNextSibling(N node) {
+        return read(() -> delegate.getNextSibling(node));
+    }
+
+    public CompletionStage<N> getPrevSibling(N node) {
+        return read(() -> delegate.getPrevSibling(node));
+    }
+
+    public CompletionStage<N> getNthChild(N parent, int index) {
+        return read(() -> delegate.getNthChild(parent, index));
+    }
+
+    public CompletionStage<List<N>> getDescendants(N node) {
+        return read(() -> delegate.getDescendants(node));
+    }
+
+    public CompletionStage<Long> countDescendants(N node) {
+        return read(() -> delegate.countDescendants(node));
+    }
+
+    public CompletionStage<Map<T, Long>> subtreeSizes(Collection<N> nodes) {
+        return read(() -> delegate.subtreeSizes(nodes));
+    }
+
+    public CompletionStage<List<N>> getDescendants(N node, int numberOfGenerations) {
+        return read(() -> delegate.getDescendants(node, numberOfGenerations));
+    }
+
+    public CompletionStage<List<N>> getDescendantsPage(N node, Long afterLeft, int limit, int numberOfGenerations) {
+        return read(() -> delegate.getDescendantsPage(node, afterLeft, limit, numberOfGenerations));
+    }
+
+    public CompletionStage<List<Record>> getDescendants(N node, int numberOfGenerations, SelectField<?>... fields) {
+        return read(() -> delegate.getDescendants(node, numberOfGenerations, fields));
+    }
+
+    public <E> CompletionStage<List<E>> getDescendants(N node, int numberOfGenerations,
+                                                       RecordMapper<? super Record, E> mapper,
+                                                       SelectField<?>... fields) {
+        return read(() -> delegate.getDescendants(node, numberOfGenerations, mapper, fields));
+    }
+
+    /**
+     * Returns all descendants of a node as publisher. The cursor is opened on the first request and holds a
+     * connection of the pool until the subscriber has received all descendants or cancels the subscription.
+     *
+     * @param node Node whose descendants are to be published
+     * @return publisher of the descendants sorted by left value
+     */
+    public Flow.Publisher<N> streamDescendants(N node) {
+        return publish(() -> delegate.streamDescendants(node));
+    }
+
+    /**
+     * Returns the descendants of a node up to a number of generations as publisher. The cursor is opened on the first
+     * request and holds a connection of the pool until the subscriber has received all descendants or cancels the
+     * subscription.
+     *
+     * @param node                Node whose descendants are to be published
+     * @param numberOfGenerations All generations when 0. Otherwise only the given amount of descendants
+     * @return publisher of the descendants sorted by left value
+     */
+    public Flow.Publisher<N> streamDescendants(N node, int numberOfGenerations) {
+        return publish(() -> delegate.streamDescendants(node, numberOfGenerations));
+    }
+
+    public CompletionStage<List<N>> getNodeAndAllDescendants(N node) {
+        return read(() -> delegate.getNodeAndAllDescendants(node));
+    }
+
+    public CompletionStage<NestedSetTree<N>> getSubtreeAsTree(N node) {
+        return read(() -> delegate.getSubtreeAsTree(node));
+    }
+
+    public CompletionStage<NestedSetTree<N>> getSubtreeAsTree(N node, int numberOfGenerations) {
+        return read(() -> delegate.getSubtreeAsTree(node, numberOfGenerations));
+    }
+
+    public CompletionStage<List<N>> getAncestors(N node, int numberOfAncestors) {
+        return read(() -> delegate.getAncestors(node, numberOfAncestors));
+    }
+
+    public CompletionStage<List<Record>> getAncestors(N node, int numberOfAncestors, SelectField<?>... fields) {
+        return read(() -> delegate.getAncestors(node, numberOfAncestors, fields));
+    }
+
+    public <E> CompletionStage<List<E>> getAncestors(N node, int numberOfAncestors,
+                                                     RecordMapper<? super Record, E> mapper,
+                                                     SelectField<?>... fields) {
+        return read(() -> delegate.getAncestors(node, numberOfAncestors, mapper, fields));
+    }
+
+    public CompletionStage<Map<T, List<N>>> getAncestorsBatch(Collection<N> nodes) {
+        return read(() -> delegate.getAncestorsBatch(nodes));
+    }
+
+    public CompletionStage<List<N>> getAncestors(N node) {
+        return read(() -> delegate.getAncestors(node));
+    }
+
+    public CompletionStage<N> getParent(N node) {
+        return read(() -> delegate.getParent(node));
+    }
+
+    public CompletionStage<Integer> compact() {
+        return writeResult(delegate::compact);
+    }
+
+    public CompletionStage<Void> rebuild(Field<T> parentField, OrderField<?>... siblingOrder) {
+        return write(() -> delegate.rebuild(parentField, siblingOrder));
+    }
+
+    public CompletionStage<Void> moveAsFirstChild(N source, N destination) {
+        return write(() -> delegate.moveAsFirstChild(source, destination));
+    }
+
+    public CompletionStage<Void> moveAsLastChild(N source, N destination) {
+        return write(() -> delegate.moveAsLastChild(source, destination));
+    }
+
+    public CompletionStage<Void> moveAsNextSibling(N source, N destination) {
+        return write(() -> delegate.moveAsNextSibling(source, destination));
+    }
+
+    public CompletionStage<Void> moveAsPrevSibling(N source, N destination) {
+        return write(() -> delegate.moveAsPrevSibling(source, destination));
+    }
+
+    /**
+     * Executes a read on the executor.
+     *
+     * @param operation operation of the decorated dao
+     * @param <X>       result type of the operation
+     * @return stage which completes with the result of the operation
+     */
+    private <X> CompletionStage<X> read(Supplier<X> operation) {
+        return CompletableFuture.supplyAsync(operation, executor);
+    }
+
+    /**
+     * Executes a modifying operation in a transaction on the executor.
+     *
+     * @param operation operation of the decorated dao
+     * @return stage which completes when the transaction has been committed
+     */
+    private CompletionStage<Void> write(Runnable operation) {
+        return writeResult(() -> {
+            operation.run();
+            return null;
+        });
+    }
+
+    /**
+     * Executes a modifying operation with result in a transaction on the executor.
+     *
+     * @param operation operation of the decorated dao
+     * @param <X>       result type of the operation
+     * @return stage which completes with the result of the operation when the transaction has been committed
+     */
+    private <X> CompletionStage<X> writeResult(Supplier<X> operation) {
+        return CompletableFuture.supplyAsync(() -> delegate.transactionResult(operation), executor);
+    }
+
+    /**
+     * Creates a publisher, which opens a new stream for every subscriber.
+     *
+     * @param source streaming read of the decorated dao
+     * @return publisher of the streamed nodes
+     */
+    private Flow.Publisher<N> publish(Supplier<Stream<N>> source) {
+        return subscriber -> subscriber.onSubscribe(new StreamSubscription(subscriber, source));
+    }
+
+    /**
+     * Subscription which emits the nodes of a stream as requested. The stream is opened on the first request and all
+     * nodes are read and emitted on the executor. At most one task per subscription is running at a time, so the
+     * subscriber is signalled serially.
+     */
+    private final class StreamSubscription implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super N> subscriber;
+
+        private final Supplier<Stream<N>> source;
+
+        private final AtomicLong demand = new AtomicLong();
+
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private volatile boolean cancelled;
+
+        private volatile Throwable invalidRequest;
+
+        private Stream<N> stream;
+
+        private Iterator<N> iterator;
+
+        private boolean done;
+
+        private StreamSubscription(Flow.Subscriber<? super N> subscriber, Supplier<Stream<N>> source) {
+            this.subscriber = subscriber;
+            this.source = source;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                invalidRequest = new IllegalArgumentException("Requested " + n + " nodes, which is not positive.");
+            } else {
+                demand.getAndUpdate(current -> current + n < 0 ? Long.MAX_VALUE : current + n);
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            schedule();
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                executor.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                if (!done) {
+                    emit();
+                }
+            } catch (Throwable e) {
+                finish();
+                if (!cancelled) {
+                    subscriber.onError(e);
+                }
+            } finally {
+                scheduled.set(false);
+            }
+
+            // signals which arrived while the task was running
+            if (!done && (cancelled || invalidRequest != null || demand.get() > 0)) {
+                schedule();
+            }
+        }
+
+        private void emit() {
+            if (cancelled) {
+                finish();
+                return;
+            }
+            if (invalidRequest != null) {
+                finish();
+                subscriber.onError(invalidRequest);
+                return;
+            }
+            if (iterator == null) {
+                stream = source.get();
+                iterator = stream.iterator();
+            }
+            while (demand.get() > 0 && !cancelled && iterator.hasNext()) {
+                demand.decrementAndGet();
+                subscriber.onNext(iterator.next());
+            }
+            if (cancelled) {
+                // cancelled by the subscriber while it received a node
+                finish();
+            } else if (!iterator.hasNext()) {
+                finish();
+                subscriber.onComplete();
+            }
+        }
+
+        private void finish() {
+            done = true;
+            if (stream != null) {
+                stream.close();
+            }
+        }
+    }
+}
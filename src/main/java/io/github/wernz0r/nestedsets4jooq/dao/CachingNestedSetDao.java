@@ -0,0 +1,627 @@
+/*
+ * Copyright 2022. Werner Elsler
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.wernz0r.nestedsets4jooq.dao;
+
+import io.github.wernz0r.nestedsets4jooq.exception.NodeNotFoundException;
+import io.github.wernz0r.nestedsets4jooq.model.NestedSetNode;
+import io.github.wernz0r.nestedsets4jooq.model.NestedSetTree;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Decorator which answers all reads of a NestedSetDao from an immutable in-memory snapshot of the whole table. The
+ * snapshot is read through the decorated dao on first access and dropped whenever the tree is modified through this
+ * decorator, so it is suited for trees which are read often and changed rarely.
+ * <p>
+ * Every modification advances a generation counter. A snapshot is only served while the generation it was read in is
+ * current, so a snapshot which was read concurrently to a modification is never cached. If the decorated dao is an
+ * {@link AbstractNestedSetDao} and the modification runs within its
+ * {@link AbstractNestedSetDao#transactionResult(java.util.function.Supplier)}, the snapshot is dropped again after
+ * the transaction has ended, as concurrent readers cannot see the modification before.
+ * <p>
+ * Modifications made outside of this decorator, e.g. by other instances of the application, are not detected. In
+ * this case, or if modifications are committed by a transaction opened outside of the decorated dao,
+ * {@link #invalidate()} must be called after the commit. The nodes returned by this class are shared between all
+ * callers and must not be modified.
+ *
+ * @param <N> Implementation of NestedSetNode
+ */
+public class CachingNestedSetDao<N extends NestedSetNode<?, ?>> implements NestedSetDao<N> {
+
+    private final NestedSetDao<N> delegate;
+
+    private final AtomicLong generation = new AtomicLong();
+
+    private volatile Snapshot<N> snapshot;
+
+    /**
+     * Constructor
+     *
+     * @param delegate dao which is used to read the snapshot and to modify the tree
+     */
+    public CachingNestedSetDao(NestedSetDao<N> delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Drops the current snapshot, so that it is read again on the next access. A snapshot which is being read while
+     * this method is called will not be cached.
+     */
+    public void invalidate() {
+        generation.incrementAndGet();
+        snapshot = null;
+    }
+
+    /**
+     * Returns the current snapshot. If there is none, or it was read in an earlier generation, it is read from the
+     * decorated dao. The read snapshot is returned in any case, but only cached for later calls, if the tree has not
+     * been modified in the meantime.
+     *
+     * @return current snapshot
+     */
+    private Snapshot<N> snapshot() {
+        Snapshot<N> current = snapshot;
+
+        if (current == null || current.generation != generation.get()) {
+            synchronized (this) {
+                current = snapshot;
+                if (current == null || current.generation != generation.get()) {
+                    current = new Snapshot<>(generation.get(), delegate.findAll());
+                    snapshot = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Executes a modification of the decorated dao and drops the snapshot afterwards. If the modification takes part
+     * in a transaction of the decorated dao, the snapshot is dropped again when the transaction has ended.
+     *
+     * @param modification modification to be executed
+     */
+    private void modify(Runnable modification) {
+        try {
+            modification.run();
+        } finally {
+            invalidate();
+            if (delegate instanceof AbstractNestedSetDao) {
+                ((AbstractNestedSetDao<?, ?, ?, ?>) delegate).afterTransaction(this::invalidate);
+            }
+        }
+    }
+
+    @Override
+    public N fetch(N node) {
+        final Snapshot<N> current = snapshot();
+
+        return current.nodes.get(current.indexOf(node));
+    }
+
+    @Override
+    public List<N> findAll() {
+        return snapshot().nodes;
+    }
+
+    @Override
+    public Stream<N> streamAll() {
+        return findAll().stream();
+    }
+
+    @Override
+    public boolean hasChildren(N node) {
+        final Snapshot<N> current = snapshot();
+        final Integer index = current.indexes.get(node.getId());
+
+        return index != null && current.endOfSubtree(index) > index + 1;
+    }
+
+    @Override
+    public boolean isRoot(N node) {
+        final Snapshot<N> current = snapshot();
+
+        return current.level[current.indexOf(node)] == 0;
+    }
+
+    @Override
+    public List<N> getChildren(N node) {
+        final Snapshot<N> current = snapshot();
+
+        return current.children(current.indexes.get(node.getId()));
+    }
+
+    @Override
+    public Map<Object, List<N>> getChildrenBatch(Collection<N> nodes) {
+        final Snapshot<N> current = snapshot();
+        final Map<Object, List<N>> children = new LinkedHashMap<>();
+
+        for (N node : nodes) {
+            children.put(node.getId(), current.children(current.indexes.get(node.getId())));
+        }
+        return children;
+    }
+
+    @Override
+    public long countChildren(N node) {
+        final Snapshot<N> current = snapshot();
+
+        return current.countChildren(current.indexes.get(node.getId()));
+    }
+
+    @Override
+    public Map<Object, Long> countChildrenBatch(Collection<N> nodes) {
+        final Snapshot<N> current = snapshot();
+        final Map<Object, Long> counts = new LinkedHashMap<>();
+
+        for (N node : nodes) {
+            counts.put(node.getId(), current.countChildren(current.indexes.get(node.getId())));
+        }
+        return counts;
+    }
+
+    @Override
+    public List<N> getSiblings(N node) {
+        final Snapshot<N> current = snapshot();
+        final Integer index = current.indexes.get(node.getId());
+
+        if (index == null || current.parent[index] == -1) {
+            return Collections.emptyList();
+        }
+
+        final int parent = current.parent[index];
+        final List<N> siblings = new ArrayList<>();
+
+        for (int i = parent + 1, end = current.endOfSubtree(parent); i < end; i = current.endOfSubtree(i)) {
+            if (i != index) {
+                siblings.add(current.nodes.get(i));
+            }
+        }
+        return siblings;
+    }
+
+    @Override
+    public N getNextSibling(N node) {
+        final Snapshot<N> current = snapshot();
+        final Integer index = current.indexes.get(node.getId());
+
+        if (index == null || current.parent[index] == -1) {
+            return null;
+        }
+
+        final int next = current.endOfSubtree(index);
+
+        return next < current.endOfSubtree(current.parent[index]) ? current.nodes.get(next) : null;
+    }
+
+    @Override
+    public N getPrevSibling(N node) {
+        final Snapshot<N> current = snapshot();
+        final Integer index = current.indexes.get(node.getId());
+
+        if (index == null || current.parent[index] == -1) {
+            return null;
+        }
+
+        // the previous sibling is the child of the parent whose subtree ends right before the node
+        for (int i = current.parent[index] + 1; i < index; ) {
+            final int next = current.endOfSubtree(i);
+
+            if (next == index) {
+                return current.nodes.get(i);
+            }
+            i = next;
+        }
+        return null;
+    }
+
+    @Override
+    public N getNthChild(N parent, int index) {
+        if (index < 0) {
+            throw new IllegalArgumentException("Index " + index + " is negative.");
+        }
+
+        final Snapshot<N> current = snapshot();
+        final Integer parentIndex = current.indexes.get(parent.getId());
+
+        if (parentIndex == null) {
+            return null;
+        }
+
+        int position = 0;
+
+        for (int i = parentIndex + 1, end = current.endOfSubtree(parentIndex); i < end; i = current.endOfSubtree(i)) {
+            if (position++ == index) {
+                return current.nodes.get(i);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public List<N> getDescendants(N node) {
+        return getDescendants(node, 0);
+    }
+
+    @Override
+    public long countDescendants(N node) {
+        final Snapshot<N> current = snapshot();
+
+        return current.countDescendants(current.indexes.get(node.getId()));
+    }
+
+    @Override
+    public Map<Object, Long> subtreeSizes(Collection<N> nodes) {
+        final Snapshot<N> current = snapshot();
+        final Map<Object, Long> sizes = new LinkedHashMap<>();
+
+        for (N node : nodes) {
+            sizes.put(node.getId(), current.countDescendants(current.indexes.get(node.getId())));
+        }
+        return sizes;
+    }
+
+    @Override
+    public List<N> getDescendants(N node, int numberOfGenerations) {
+        final Snapshot<N> current = snapshot();
+        final Integer index = current.indexes.get(node.getId());
+
+        if (index == null) {
+            return Collections.emptyList();
+        }
+
+        final int end = current.endOfSubtree(index);
+
+        if (numberOfGenerations == 0) {
+            return current.nodes.subList(index + 1, end);
+        }
+
+        final long maxLevel = current.level[index] + numberOfGenerations;
+        final List<N> descendants = new ArrayList<>();
+
+        for (int i = index + 1; i < end; ) {
+            descendants.add(current.nodes.get(i));
+            // the descendants of the deepest requested generation are skipped
+            i = current.level[i] < maxLevel ? i + 1 : current.endOfSubtree(i);
+        }
+        return descendants;
+    }
+
+    @Override
+    public Stream<N> streamDescendants(N node) {
+        return getDescendants(node).stream();
+    }
+
+    @Override
+    public Stream<N> streamDescendants(N node, int numberOfGenerations) {
+        return getDescendants(node, numberOfGenerations).stream();
+    }
+
+    @Override
+    public List<N> getNodeAndAllDescendants(N node) {
+        final Snapshot<N> current = snapshot();
+        final Integer index = current.indexes.get(node.getId());
+
+        if (index == null) {
+            return Collections.emptyList();
+        }
+        return current.nodes.subList(index, current.endOfSubtree(index));
+    }
+
+    @Override
+    public NestedSetTree<N> getSubtreeAsTree(N node) {
+        return getSubtreeAsTree(node, 0);
+    }
+
+    @Override
+    public NestedSetTree<N> getSubtreeAsTree(N node, int numberOfGenerations) {
+        final Snapshot<N> current = snapshot();
+        final int index = current.indexOf(node);
+        final long maxLevel = current.level[index] + numberOfGenerations;
+
+        final NestedSetTree<N> tree = new NestedSetTree<>(current.nodes.get(index));
+        final Deque<NestedSetTree<N>> path = new ArrayDeque<>();
+        path.push(tree);
+
+        for (int i = index + 1; i < current.endOfSubtree(index); i++) {
+            if (numberOfGenerations != 0 && current.level[i] > maxLevel) {
+                continue;
+            }
+            while (path.peek().getNode().getLevel() >= current.level[i]) {
+                path.pop();
+            }
+            path.push(path.peek().addChild(current.nodes.get(i)));
+        }
+
+        return tree;
+    }
+
+    @Override
+    public List<N> getAncestors(N node, int numberOfAncestors) {
+        final Snapshot<N> current = snapshot();
+
+        return current.ancestors(current.indexes.get(node.getId()), numberOfAncestors);
+    }
+
+    @Override
+    public List<N> getAncestors(N node) {
+        return getAncestors(node, 0);
+    }
+
+    @Override
+    public Map<Object, List<N>> getAncestorsBatch(Collection<N> nodes) {
+        final Snapshot<N> current = snapshot();
+        final Map<Object, List<N>> ancestors = new LinkedHashMap<>();
+
+        for (N node : nodes) {
+            ancestors.put(node.getId(), current.ancestors(current.indexes.get(node.getId()), 0));
+        }
+        return ancestors;
+    }
+
+    @Override
+    public N getParent(N node) {
+        final Snapshot<N> current = snapshot();
+        final int parent = current.parent[current.indexOf(node)];
+
+        return parent == -1 ? null : current.nodes.get(parent);
+    }
+
+    @Override
+    public void delete(N node) {
+        modify(() -> delegate.delete(node));
+    }
+
+    @Override
+    public void deleteAll(Collection<N> nodes) {
+        modify(() -> delegate.deleteAll(nodes));
+    }
+
+    @Override
+    public void insertAsRoot(N node) {
+        modify(() -> delegate.insertAsRoot(node));
+    }
+
+    @Override
+    public void insertAsFirstChild(N parent, N child) {
+        modify(() -> delegate.insertAsFirstChild(parent, child));
+    }
+
+    @Override
+    public void insertAsLastChild(N parent, N child) {
+        modify(() -> delegate.insertAsLastChild(parent, child));
+    }
+
+    @Override
+    public void insertAsPrevSibling(N existingNode, N sibling) {
+        modify(() -> delegate.insertAsPrevSibling(existingNode, sibling));
+    }
+
+    @Override
+    public void insertAsNextSibling(N existingNode, N sibling) {
+        modify(() -> delegate.insertAsNextSibling(existingNode, sibling));
+    }
+
+    @Override
+    public void insertSubtree(N parent, NestedSetTree<N> subtree) {
+        modify(() -> delegate.insertSubtree(parent, subtree));
+    }
+
+    @Override
+    public void moveAsFirstChild(N source, N destination) {
+        modify(() -> delegate.moveAsFirstChild(source, destination));
+    }
+
+    @Override
+    public void moveAsLastChild(N source, N destination) {
+        modify(() -> delegate.moveAsLastChild(source, destination));
+    }
+
+    @Override
+    public void moveAsNextSibling(N source, N destination) {
+        modify(() -> delegate.moveAsNextSibling(source, destination));
+    }
+
+    @Override
+    public void moveAsPrevSibling(N source, N destination) {
+        modify(() -> delegate.moveAsPrevSibling(source, destination));
+    }
+
+    /**
+     * Immutable copy of all nodes sorted by tree and left value. The values of the nodes are held in primitive arrays,
+     * so subtrees can be determined by binary search.
+     *
+     * @param <N> Implementation of NestedSetNode
+     */
+    private static final class Snapshot<N extends NestedSetNode<?, ?>> {
+
+        /**
+         * Generation of the decorator in which the reading of the snapshot started
+         */
+        private final long generation;
+
+        private final List<N> nodes;
+
+        private final Map<Object, Integer> indexes = new HashMap<>();
+
+        private final long[] left;
+
+        private final long[] right;
+
+        private final long[] level;
+
+        /**
+         * Index of the parent of each node, -1 for roots
+         */
+        private final int[] parent;
+
+        /**
+         * Index behind the last node of the tree of each node
+         */
+        private final int[] endOfTree;
+
+        private Snapshot(long generation, List<N> nodes) {
+            final int size = nodes.size();
+
+            this.generation = generation;
+            this.nodes = Collections.unmodifiableList(new ArrayList<>(nodes));
+            this.left = new long[size];
+            this.right = new long[size];
+            this.level = new long[size];
+            this.parent = new int[size];
+            this.endOfTree = new int[size];
+
+            final int[] stack = new int[size];
+            int depth = 0;
+
+            for (int i = 0; i < size; i++) {
+                final N node = nodes.get(i);
+
+                indexes.put(node.getId(), i);
+                left[i] = node.getLeft();
+                right[i] = node.getRight();
+                level[i] = node.getLevel();
+
+                // every root starts a new tree
+                if (level[i] == 0) {
+                    depth = 0;
+                }
+                while (depth > 0 && right[stack[depth - 1]] < left[i]) {
+                    depth--;
+                }
+                parent[i] = depth > 0 ? stack[depth - 1] : -1;
+                stack[depth++] = i;
+            }
+
+            int end = size;
+            for (int i = size - 1; i >= 0; i--) {
+                endOfTree[i] = end;
+                if (level[i] == 0) {
+                    end = i;
+                }
+            }
+        }
+
+        /**
+         * Returns the index of a node. If the node is not part of the snapshot, a NodeNotFoundException is thrown.
+         *
+         * @param node node to be searched
+         * @return index of the node
+         */
+        private int indexOf(N node) {
+            final Integer index = indexes.get(node.getId());
+
+            if (index == null) {
+                throw new NodeNotFoundException("Node with id " + node.getId() + " not found.");
+            }
+            return index;
+        }
+
+        /**
+         * Returns the children of a node.
+         *
+         * @param index index of the node, null if it does not exist
+         * @return sorted list of the children
+         */
+        private List<N> children(Integer index) {
+            if (index == null) {
+                return Collections.emptyList();
+            }
+
+            final List<N> children = new ArrayList<>();
+
+            for (int i = index + 1, end = endOfSubtree(index); i < end; i = endOfSubtree(i)) {
+                children.add(nodes.get(i));
+            }
+            return children;
+        }
+
+        /**
+         * Counts the children of a node by jumping from child to child.
+         *
+         * @param index index of the node, null if it does not exist
+         * @return number of children
+         */
+        private long countChildren(Integer index) {
+            if (index == null) {
+                return 0;
+            }
+
+            long count = 0;
+
+            for (int i = index + 1, end = endOfSubtree(index); i < end; i = endOfSubtree(i)) {
+                count++;
+            }
+            return count;
+        }
+
+        /**
+         * Returns the number of descendants of a node, which directly follow it in the snapshot.
+         *
+         * @param index index of the node, null if it does not exist
+         * @return number of descendants
+         */
+        private long countDescendants(Integer index) {
+            return index == null ? 0 : endOfSubtree(index) - index - 1;
+        }
+
+        /**
+         * Returns the ancestors of a node, starting with its parent.
+         *
+         * @param index             index of the node, null if it does not exist
+         * @param numberOfAncestors maximum number of ancestors, 0 for all
+         * @return sorted list of the ancestors
+         */
+        private List<N> ancestors(Integer index, int numberOfAncestors) {
+            if (index == null) {
+                return Collections.emptyList();
+            }
+
+            final List<N> ancestors = new ArrayList<>();
+
+            for (int i = parent[index]; i != -1; i = parent[i]) {
+                if (numberOfAncestors != 0 && ancestors.size() == numberOfAncestors) {
+                    break;
+                }
+                ancestors.add(nodes.get(i));
+            }
+            return ancestors;
+        }
+
+        /**
+         * Returns the index behind the last descendant of a node.
+         *
+         * @param index index of the node
+         * @return index behind the subtree
+         */
+        private int endOfSubtree(int index) {
+            final int position = Arrays.binarySearch(left, index + 1, endOfTree[index], right[index]);
+
+            return position < 0 ? -position - 1 : position;
+        }
+    }
+}
@@ -16,16 +16,36 @@
 
 package io.github.wernz0r.nestedsets4jooq.dao;
 
-import java.util.List;
+import io.github.wernz0r.nestedsets4jooq.model.NestedSetTree;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Operations on a tree of nodes stored as nested set.
+ * <p>
+ * Reads of the relatives of a node, e.g. its children, descendants, ancestors or siblings, join the row of the node to
+ * its relatives in a single query. A node which does not exist therefore has no relatives: the lists are empty, the
+ * counts are 0, hasChildren returns false and the sibling lookups return null. {@link #fetch(Object)},
+ * {@link #isRoot(Object)}, {@link #getParent(Object)}, the subtree reads and all modifications throw a
+ * NodeNotFoundException instead.
+ *
+ * @param <N> type of the nodes
+ */
 public interface NestedSetDao<N> {
 
     N fetch(N node);
 
     void delete(N node);
 
+    void deleteAll(Collection<N> nodes);
+
     List<N> findAll();
 
+    Stream<N> streamAll();
+
     void insertAsRoot(N node);
 
     void insertAsFirstChild(N parent, N child);
@@ -36,22 +56,83 @@ public interface NestedSetDao<N> {
 
     void insertAsNextSibling(N existingNode, N sibling);
 
+    void insertSubtree(N parent, NestedSetTree<N> subtree);
+
     boolean hasChildren(N node);
 
     boolean isRoot(N node);
 
     List<N> getChildren(N node);
 
+    long countChildren(N node);
+
+    /**
+     * Returns the children of multiple nodes.
+     *
+     * @param nodes nodes whose children are to be determined
+     * @return sorted lists of the children by ID of the nodes, in the order of the passed nodes
+     */
+    Map<?, List<N>> getChildrenBatch(Collection<N> nodes);
+
+    /**
+     * Returns the number of children of multiple nodes.
+     *
+     * @param nodes nodes whose children are to be counted
+     * @return number of children by ID of the nodes, in the order of the passed nodes
+     */
+    Map<?, Long> countChildrenBatch(Collection<N> nodes);
+
+    List<N> getSiblings(N node);
+
+    N getNextSibling(N node);
+
+    N getPrevSibling(N node);
+
+    N getNthChild(N parent, int index);
+
     List<N> getDescendants(N node);
 
+    long countDescendants(N node);
+
+    /**
+     * Returns the number of descendants of multiple nodes.
+     *
+     * @param nodes nodes whose descendants are to be counted
+     * @return number of descendants by ID of the nodes, in the order of the passed nodes
+     */
+    Map<?, Long> subtreeSizes(Collection<N> nodes);
+
     List<N> getDescendants(N node, int numberOfGenerations);
 
+    Stream<N> streamDescendants(N node);
+
+    Stream<N> streamDescendants(N node, int numberOfGenerations);
+
     List<N> getNodeAndAllDescendants(N node);
 
+    NestedSetTree<N> getSubtreeAsTree(N node);
+
+    NestedSetTree<N> getSubtreeAsTree(N node, int numberOfGenerations);
+
     List<N> getAncestors(N node, int numberOfAncestors);
 
     List<N> getAncestors(N node);
 
+    /**
+     * Returns the ancestors of multiple nodes.
+     *
+     * @param nodes nodes whose ancestors are to be determined
+     * @return sorted lists of the ancestors by ID of the nodes, in the order of the passed nodes, each starting with
+     * the parent
+     */
+    Map<?, List<N>> getAncestorsBatch(Collection<N> nodes);
+
+    /**
+     * Returns the parent of a node.
+     *
+     * @param node node whose parent is to be returned
+     * @return parent, or null if the node is a root
+     */
     N getParent(N node);
 
     void moveAsFirstChild(N source, N destination);
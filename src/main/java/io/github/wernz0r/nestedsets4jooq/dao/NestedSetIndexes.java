@@ -0,0 +1,221 @@
+/*
+ * Copyright 2022. Werner Elsler
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.wernz0r.nestedsets4jooq.dao;
+
+import org.jooq.*;
+import org.jooq.impl.DSL;
+import org.jooq.tools.JooqLogger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Recommends indexes for the access patterns of a nested set dao and checks, whether they exist in the database.
+ * <p>
+ * All reads and shifts filter on ranges of the left and right values, generation-limited reads additionally on the
+ * level. Without the following indexes every operation scans the whole table:
+ * <ul>
+ *     <li>(left, right): descendants, ancestors and shifts</li>
+ *     <li>(level, left): reads limited to a number of generations, e.g. children</li>
+ * </ul>
+ * If a scope field is defined, it is prepended to each index, as every statement is restricted to a single tree.
+ * Note that every additional index on the left and right values has to be maintained by each shift, so no further
+ * indexes on these columns are recommended.
+ */
+public final class NestedSetIndexes {
+
+    private static final JooqLogger log = JooqLogger.getLogger(NestedSetIndexes.class);
+
+    private NestedSetIndexes() {
+    }
+
+    /**
+     * Returns the recommended indexes for the table of a dao.
+     *
+     * @param dao nested set dao
+     * @return recommended indexes
+     */
+    public static List<RecommendedIndex> recommend(AbstractNestedSetDao<?, ?, ?, ?> dao) {
+        return List.of(
+                index(dao, dao.getLeftField(), dao.getRightField()),
+                index(dao, dao.getLevelField(), dao.getLeftField()));
+    }
+
+    /**
+     * Returns CREATE INDEX IF NOT EXISTS statements for the recommended indexes of a dao. The statements are rendered
+     * for the dialect of the dao, e.g. by calling {@link Query#getSQL()}, or can be executed directly.
+     *
+     * @param dao nested set dao
+     * @return DDL statements
+     */
+    public static List<Query> createStatements(AbstractNestedSetDao<?, ?, ?, ?> dao) {
+        final List<Query> statements = new ArrayList<>();
+
+        for (RecommendedIndex index : recommend(dao)) {
+            statements.add(index.createStatement(dao.ctx()));
+        }
+        return statements;
+    }
+
+    /**
+     * Reads the existing indexes of the table of a dao from the database and returns the recommended indexes which are
+     * missing. A recommended index is considered to exist, if there is an index whose leading columns are the columns
+     * of the recommended index.
+     *
+     * @param dao nested set dao
+     * @return missing indexes
+     */
+    public static List<RecommendedIndex> findMissing(AbstractNestedSetDao<?, ?, ?, ?> dao) {
+        final Table<?> table = dao.getTable();
+        final List<List<String>> existing = new ArrayList<>();
+
+        for (Table<?> metaTable : dao.ctx().meta().getTables(table.getName())) {
+            // tables generated without schema match the table in every schema
+            if (table.getSchema() != null && !table.getSchema().getName().isEmpty() && metaTable.getSchema() != null
+                    && !table.getSchema().getName().equalsIgnoreCase(metaTable.getSchema().getName())) {
+                continue;
+            }
+            for (Index index : metaTable.getIndexes()) {
+                existing.add(columns(index.getFields().stream().map(SortField::getName)));
+            }
+        }
+
+        final List<RecommendedIndex> missing = new ArrayList<>();
+
+        for (RecommendedIndex index : recommend(dao)) {
+            final List<String> columns = columns(index.getFields().stream().map(Field::getName));
+
+            if (existing.stream().noneMatch(other -> other.size() >= columns.size()
+                    && other.subList(0, columns.size()).equals(columns))) {
+                missing.add(index);
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Logs a warning for each recommended index which is missing in the database.
+     *
+     * @param dao nested set dao
+     * @see AbstractNestedSetDao#isIndexCheckEnabled()
+     */
+    public static void warnIfMissing(AbstractNestedSetDao<?, ?, ?, ?> dao) {
+        for (RecommendedIndex index : findMissing(dao)) {
+            log.warn("Missing index", "The table " + dao.getTable().getName() + " has no index on "
+                    + String.join(", ", columns(index.getFields().stream().map(Field::getName)))
+                    + ". Every nested set query will scan the whole table. Recommended DDL: "
+                    + index.createStatement(dao.ctx()).getSQL());
+        }
+    }
+
+    /**
+     * Creates an index on the given fields, prefixed by the scope field of the dao.
+     *
+     * @param dao    nested set dao
+     * @param fields fields of the index
+     * @return index named after the table and its columns
+     */
+    private static RecommendedIndex index(AbstractNestedSetDao<?, ?, ?, ?> dao, Field<?>... fields) {
+        final List<Field<?>> columns = new ArrayList<>();
+
+        if (dao.getScopeField() != null) {
+            columns.add(dao.getScopeField());
+        }
+        columns.addAll(List.of(fields));
+
+        final String name = dao.getTable().getName() + "_" + columns.stream()
+                .map(Field::getName)
+                .collect(Collectors.joining("_"));
+
+        return new RecommendedIndex(name.toLowerCase(Locale.ROOT), dao.getTable(), columns);
+    }
+
+    /**
+     * Returns the upper case column names of the fields of an index.
+     *
+     * @param names names of the fields of the index
+     * @return column names
+     */
+    private static List<String> columns(Stream<String> names) {
+        return names
+                .map(name -> name.toUpperCase(Locale.ROOT))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Index recommended for the table of a nested set dao.
+     */
+    public static final class RecommendedIndex {
+
+        private final String name;
+
+        private final Table<?> table;
+
+        private final List<Field<?>> fields;
+
+        private RecommendedIndex(String name, Table<?> table, List<Field<?>> fields) {
+            this.name = name;
+            this.table = table;
+            this.fields = List.copyOf(fields);
+        }
+
+        /**
+         * Returns the unqualified name of the index.
+         *
+         * @return name of the index
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the table of the index.
+         *
+         * @return table
+         */
+        public Table<?> getTable() {
+            return table;
+        }
+
+        /**
+         * Returns the fields of the index in their order.
+         *
+         * @return fields
+         */
+        public List<Field<?>> getFields() {
+            return fields;
+        }
+
+        /**
+         * Returns a CREATE INDEX IF NOT EXISTS statement for the index.
+         *
+         * @param ctx context the statement is created for
+         * @return DDL statement
+         */
+        public Query createStatement(DSLContext ctx) {
+            return ctx.createIndexIfNotExists(DSL.name(name)).on(table, fields);
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+}
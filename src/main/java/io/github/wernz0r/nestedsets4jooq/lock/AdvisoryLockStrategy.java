@@ -0,0 +1,81 @@
+/*
+ * Copyright 2022. Werner Elsler
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.wernz0r.nestedsets4jooq.lock;
+
+import org.jooq.SQLDialect;
+import org.jooq.impl.DSL;
+import org.jooq.impl.SQLDataType;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Pessimistic strategy which acquires a transaction-level advisory lock per affected tree at the beginning of the
+ * transaction of an operation. In contrast to row locks, advisory locks do not lock any rows, so readers which lock
+ * rows themselves are never blocked, and inserting the first root of a tree is serialized as well.
+ * <p>
+ * A lock is identified by a pair of keys: the hash code of the qualified name of the table and the scope of the tree.
+ * Scopes which are integral numbers within the range of an int are used as key directly, so each of these trees has a
+ * lock of its own. Other scopes are represented by their hash code, so different trees can share a key, which only
+ * causes unnecessary waits. Advisory locks are only supported by PostgreSQL, for other dialects an
+ * {@link IllegalStateException} is thrown.
+ */
+public class AdvisoryLockStrategy implements LockStrategy {
+
+    @Override
+    public <X> X execute(LockTarget target, Supplier<X> operation) {
+        final SQLDialect dialect = target.ctx().family();
+
+        if (dialect != SQLDialect.POSTGRES) {
+            throw new IllegalStateException("Advisory locks are not supported by " + dialect + ".");
+        }
+
+        return target.inTransaction(() -> {
+            final int table = target.getTable().getQualifiedName().toString().hashCode();
+            final List<Object> scopes = target.scopes();
+
+            // acquire the locks in a fixed order, so operations which affect multiple trees cannot deadlock
+            scopes.stream()
+                    .mapToInt(AdvisoryLockStrategy::key)
+                    .sorted()
+                    .distinct()
+                    .forEach(key -> target.ctx()
+                            .select(DSL.function("pg_advisory_xact_lock", SQLDataType.OTHER, DSL.val(table),
+                                    DSL.val(key)))
+                            .fetch());
+
+            return operation.get();
+        });
+    }
+
+    /**
+     * Returns the key of the lock of a tree within its table.
+     *
+     * @param scope scope of the tree, null if no scope field is defined
+     * @return the scope, if it is an integral number within the range of an int, otherwise its hash code
+     */
+    private static int key(Object scope) {
+        if (scope instanceof Integer || scope instanceof Short || scope instanceof Byte) {
+            return ((Number) scope).intValue();
+        }
+        if (scope instanceof Long && (Long) scope == ((Long) scope).intValue()) {
+            return ((Long) scope).intValue();
+        }
+        return Objects.hashCode(scope);
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2022. Werner Elsler
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.wernz0r.nestedsets4jooq.lock;
+
+import java.util.function.Supplier;
+
+/**
+ * Protects the modifying operations of a nested set dao against concurrent modifications of the same tree. Each
+ * operation reads the current left and right values of the affected nodes before it shifts the other nodes, so two
+ * operations which run concurrently on the same tree corrupt it, unless they are serialized by a lock or one of them
+ * is repeated.
+ * <p>
+ * A strategy is called once per modifying operation with the trees affected by the operation. It is responsible for
+ * running the operation in a transaction by {@link LockTarget#inTransaction(Supplier)} and for acquiring the lock
+ * within that transaction before the operation reads any values.
+ */
+@FunctionalInterface
+public interface LockStrategy {
+
+    /**
+     * Strategy which neither opens a transaction nor acquires a lock. The caller is responsible for preventing
+     * concurrent modifications of the same tree, e.g. by serializing all writes.
+     */
+    LockStrategy NONE = new LockStrategy() {
+        @Override
+        public <X> X execute(LockTarget target, Supplier<X> operation) {
+            return operation.get();
+        }
+    };
+
+    /**
+     * Executes a modifying operation.
+     *
+     * @param target    trees affected by the operation
+     * @param operation implementation of the operation
+     * @param <X>       result type of the operation
+     * @return result of the operation
+     */
+    <X> X execute(LockTarget target, Supplier<X> operation);
+}
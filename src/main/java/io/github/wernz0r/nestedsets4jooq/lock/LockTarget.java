@@ -0,0 +1,88 @@
+/*
+ * Copyright 2022. Werner Elsler
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.wernz0r.nestedsets4jooq.lock;
+
+import org.jooq.Condition;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.Table;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Trees which are affected by a modifying operation of a nested set dao. It is passed to a {@link LockStrategy}, which
+ * locks the trees within the transaction of the operation.
+ */
+public interface LockTarget {
+
+    /**
+     * Returns the DSLContext of the dao. Within {@link #inTransaction(Supplier)} it refers to the transaction of the
+     * operation.
+     *
+     * @return DSLContext
+     */
+    DSLContext ctx();
+
+    /**
+     * Returns the nested set table.
+     *
+     * @return table
+     */
+    Table<?> getTable();
+
+    /**
+     * Returns the primary key column of the nested set table.
+     *
+     * @return id field
+     */
+    Field<?> getIdField();
+
+    /**
+     * Returns the column which separates the trees of the nested set table.
+     *
+     * @return scope field, or null if the table contains a single tree
+     */
+    Field<?> getScopeField();
+
+    /**
+     * Returns a condition which selects the roots of the affected trees. If no scope field is defined, this is the
+     * root of the only tree. Operations which affect all trees, like compaction or a rebuild, select all roots.
+     *
+     * @return condition for the roots
+     */
+    Condition roots();
+
+    /**
+     * Reads the values of the scope field of the affected trees. If no scope field is defined, a list containing a
+     * single null value is returned.
+     *
+     * @return scopes of the affected trees
+     */
+    List<Object> scopes();
+
+    /**
+     * Executes the operation, or any other code, in a transaction. All statements of the dao which are executed by the
+     * current thread within the given code take part in this transaction. The transaction is committed when the code
+     * returns and rolled back when it throws an exception.
+     *
+     * @param operation code to be executed
+     * @param <X>       result type of the code
+     * @return result of the code
+     */
+    <X> X inTransaction(Supplier<X> operation);
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2022. Werner Elsler
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.wernz0r.nestedsets4jooq.lock;
+
+import io.github.wernz0r.nestedsets4jooq.exception.ConcurrentTreeModificationException;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.Record3;
+import org.jooq.Result;
+import org.jooq.exception.DataAccessException;
+import org.jooq.exception.SQLStateClass;
+import org.jooq.impl.DSL;
+
+import java.util.function.Supplier;
+
+/**
+ * Optimistic strategy which counts the modifications of each tree in a version column of its root. An operation reads
+ * the versions of the affected trees at the beginning of its transaction and increments them at the end, provided that
+ * they have not been changed in the meantime. Otherwise the transaction is rolled back and the operation is repeated
+ * with the current values, until the maximum number of attempts is reached. Serialization failures reported by the
+ * database are repeated as well.
+ * <p>
+ * No lock is held while the values of the affected nodes are read, so this strategy scales best when concurrent
+ * modifications of the same tree are rare, e.g. with sparse numbering or many small trees in a scoped table. The
+ * version column must be a numeric column of the nested set table, a null value is treated as 0.
+ * <p>
+ * If the root of a tree no longer exists at the end of an operation, e.g. because the operation deleted it, there is
+ * no version left to increment. This is accepted, if no node of the tree remains either, as the tree has been removed
+ * as a whole. Otherwise the tree has been modified concurrently.
+ */
+public class OptimisticLockStrategy implements LockStrategy {
+
+    /**
+     * Default maximum number of attempts per operation.
+     */
+    private static final int DEFAULT_MAX_ATTEMPTS = 3;
+
+    private final Field<Long> versionField;
+
+    private final int maxAttempts;
+
+    /**
+     * Constructor
+     *
+     * @param versionField column of the nested set table, which contains the version of a tree in its root
+     */
+    public OptimisticLockStrategy(Field<Long> versionField) {
+        this(versionField, DEFAULT_MAX_ATTEMPTS);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param versionField column of the nested set table, which contains the version of a tree in its root
+     * @param maxAttempts  maximum number of attempts per operation
+     */
+    public OptimisticLockStrategy(Field<Long> versionField, int maxAttempts) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("At least one attempt is required.");
+        }
+        this.versionField = versionField;
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * Executes an operation and repeats it, if one of the affected trees has been modified concurrently.
+     *
+     * @param target    trees affected by the operation
+     * @param operation implementation of the operation
+     * @param <X>       result type of the operation
+     * @return result of the operation
+     * @throws ConcurrentTreeModificationException if the last attempt conflicted with another modification
+     */
+    @Override
+    public <X> X execute(LockTarget target, Supplier<X> operation) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return target.inTransaction(() -> attempt(target, operation));
+            } catch (ConcurrentTreeModificationException e) {
+                if (attempt >= maxAttempts) {
+                    throw e;
+                }
+            } catch (DataAccessException e) {
+                if (attempt >= maxAttempts || e.sqlStateClass() != SQLStateClass.C40_TRANSACTION_ROLLBACK) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Executes a single attempt of an operation within its transaction.
+     *
+     * @param target    trees affected by the operation
+     * @param operation implementation of the operation
+     * @param <X>       result type of the operation
+     * @return result of the operation
+     */
+    @SuppressWarnings("unchecked")
+    private <X> X attempt(LockTarget target, Supplier<X> operation) {
+        final DSLContext ctx = target.ctx();
+        final Field<Object> idField = (Field<Object>) target.getIdField();
+
+        final Field<Object> scopeField = (Field<Object>) target.getScopeField();
+
+        final Result<Record3<Object, Long, Object>> versions = ctx.select(idField, versionField,
+                        scopeField == null ? DSL.inline((Object) null) : scopeField)
+                .from(target.getTable())
+                .where(target.roots())
+                .fetch();
+
+        final X result = operation.get();
+
+        for (Record3<Object, Long, Object> version : versions) {
+            final int updated = ctx.update(target.getTable())
+                    .set(versionField, DSL.coalesce(versionField, 0L).plus(1L))
+                    .where(idField.eq(version.value1()))
+                    .and(versionField.isNotDistinctFrom(version.value2()))
+                    .execute();
+
+            if (updated == 0 && !isRemoved(target, version.value1(), version.value3())) {
+                throw new ConcurrentTreeModificationException("Tree with root " + version.value1()
+                        + " has been modified concurrently.");
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns true, if neither the root nor any other node of a tree exists anymore.
+     *
+     * @param target trees affected by the operation
+     * @param rootId id of the root of the tree
+     * @param scope  scope of the tree, null if no scope field is defined
+     * @return true, if the tree has been removed
+     */
+    @SuppressWarnings("unchecked")
+    private boolean isRemoved(LockTarget target, Object rootId, Object scope) {
+        final DSLContext ctx = target.ctx();
+        final Field<Object> scopeField = (Field<Object>) target.getScopeField();
+
+        if (ctx.fetchExists(target.getTable(), ((Field<Object>) target.getIdField()).eq(rootId))) {
+            return false;
+        }
+        return scopeField == null
+                ? !ctx.fetchExists(target.getTable())
+                : !ctx.fetchExists(target.getTable(), scopeField.isNotDistinctFrom(scope));
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2022. Werner Elsler
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.wernz0r.nestedsets4jooq.lock;
+
+import java.util.function.Supplier;
+
+/**
+ * Pessimistic strategy which locks the roots of the affected trees by SELECT ... FOR UPDATE at the beginning of the
+ * transaction of an operation. Every operation which modifies a tree changes the right value of its root anyway, so
+ * the lock does not block any operation which would not have been blocked later on, but it is acquired before the
+ * values of the affected nodes are read. Operations on different trees of a scoped table do not block each other.
+ * <p>
+ * The roots are locked in the order of their IDs, so operations which affect multiple trees cannot deadlock.
+ */
+public class RowLockStrategy implements LockStrategy {
+
+    @Override
+    public <X> X execute(LockTarget target, Supplier<X> operation) {
+        return target.inTransaction(() -> {
+            target.ctx().select(target.getIdField())
+                    .from(target.getTable())
+                    .where(target.roots())
+                    .orderBy(target.getIdField())
+                    .forUpdate()
+                    .fetch();
+
+            return operation.get();
+        });
+    }
+}
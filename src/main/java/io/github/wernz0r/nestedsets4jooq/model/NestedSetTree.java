@@ -0,0 +1,71 @@
+/*
+ * Copyright 2022. Werner Elsler
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.wernz0r.nestedsets4jooq.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A node together with its children as an object graph.
+ *
+ * @param <N> Implementation of NestedSetNode
+ */
+public class NestedSetTree<N> {
+
+    private final N node;
+
+    private final List<NestedSetTree<N>> children = new ArrayList<>();
+
+    /**
+     * Constructor
+     *
+     * @param node node at the top of the tree
+     */
+    public NestedSetTree(N node) {
+        this.node = node;
+    }
+
+    /**
+     * Returns the node at the top of the tree.
+     *
+     * @return node
+     */
+    public N getNode() {
+        return node;
+    }
+
+    /**
+     * Returns the children of the node as a sorted list.
+     *
+     * @return Sorted list of all children
+     */
+    public List<NestedSetTree<N>> getChildren() {
+        return children;
+    }
+
+    /**
+     * Adds a child as last child of the node.
+     *
+     * @param child child node
+     * @return tree of the added child, which can be used to add further descendants
+     */
+    public NestedSetTree<N> addChild(N child) {
+        final NestedSetTree<N> tree = new NestedSetTree<>(child);
+        children.add(tree);
+        return tree;
+    }
+}
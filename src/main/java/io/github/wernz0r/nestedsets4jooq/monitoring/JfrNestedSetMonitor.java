@@ -0,0 +1,81 @@
+/*
+ * Copyright 2022. Werner Elsler
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.wernz0r.nestedsets4jooq.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Monitor which emits a Java Flight Recorder event for every operation. The events are only created while a
+ * recording is running which has the event io.github.wernz0r.nestedsets4jooq.Operation enabled, otherwise the
+ * overhead is negligible.
+ */
+public class JfrNestedSetMonitor implements NestedSetMonitor {
+
+    @Override
+    public Observation start(String operation) {
+        final OperationEvent event = new OperationEvent();
+
+        if (!event.isEnabled()) {
+            return statistics -> {
+            };
+        }
+
+        event.begin();
+
+        return statistics -> {
+            event.end();
+            if (event.shouldCommit()) {
+                event.operation = statistics.getOperation();
+                event.statements = statistics.getStatements();
+                event.shifts = statistics.getRowsShifted().size();
+                event.rowsShifted = statistics.getTotalRowsShifted();
+                event.failed = statistics.isFailed();
+                event.commit();
+            }
+        };
+    }
+
+    @Name("io.github.wernz0r.nestedsets4jooq.Operation")
+    @Label("Nested Set Operation")
+    @Category("Nested Sets")
+    @Description("Operation of a nested set dao")
+    @StackTrace(false)
+    static class OperationEvent extends Event {
+
+        @Label("Operation")
+        String operation;
+
+        @Label("Statements")
+        int statements;
+
+        @Label("Shifts")
+        @Description("Number of statements which shifted the values of existing nodes")
+        int shifts;
+
+        @Label("Rows Shifted")
+        @Description("Number of rows affected by all shifts")
+        long rowsShifted;
+
+        @Label("Failed")
+        boolean failed;
+    }
+}
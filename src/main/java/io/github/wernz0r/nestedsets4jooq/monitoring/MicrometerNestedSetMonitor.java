@@ -0,0 +1,70 @@
+/*
+ * Copyright 2022. Werner Elsler
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.wernz0r.nestedsets4jooq.monitoring;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Monitor which records the operations in a Micrometer registry. Micrometer is an optional dependency, which must be
+ * added to the application to use this class. The following meters are tagged with the name of the operation:
+ * <ul>
+ *     <li>nestedsets.operation: timer of the whole operation, additionally tagged with the outcome</li>
+ *     <li>nestedsets.statements: number of statements per operation</li>
+ *     <li>nestedsets.rows.shifted: number of rows affected per shift</li>
+ * </ul>
+ */
+public class MicrometerNestedSetMonitor implements NestedSetMonitor {
+
+    private final MeterRegistry registry;
+
+    /**
+     * Constructor
+     *
+     * @param registry registry the meters are added to
+     */
+    public MicrometerNestedSetMonitor(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public Observation start(String operation) {
+        final Timer.Sample sample = Timer.start(registry);
+
+        return statistics -> {
+            sample.stop(Timer.builder("nestedsets.operation")
+                    .tag("operation", operation)
+                    .tag("outcome", statistics.isFailed() ? "failure" : "success")
+                    .register(registry));
+
+            DistributionSummary.builder("nestedsets.statements")
+                    .tag("operation", operation)
+                    .register(registry)
+                    .record(statistics.getStatements());
+
+            if (!statistics.getRowsShifted().isEmpty()) {
+                final DistributionSummary rowsShifted = DistributionSummary.builder("nestedsets.rows.shifted")
+                        .tag("operation", operation)
+                        .baseUnit("rows")
+                        .register(registry);
+
+                statistics.getRowsShifted().forEach(rowsShifted::record);
+            }
+        };
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2022. Werner Elsler
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.wernz0r.nestedsets4jooq.monitoring;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Receives the statistics of the operations of a nested set dao. A monitor is notified when an operation starts and
+ * the returned observation is stopped with the statistics of the operation when it has finished.
+ */
+@FunctionalInterface
+public interface NestedSetMonitor {
+
+    /**
+     * Monitor which ignores all operations. If it is used, no statistics are collected at all.
+     */
+    NestedSetMonitor NONE = operation -> statistics -> {
+    };
+
+    /**
+     * Called on the thread of the operation when it starts.
+     *
+     * @param operation name of the operation, e.g. insertAsLastChild
+     * @return observation which is stopped when the operation has finished
+     */
+    Observation start(String operation);
+
+    /**
+     * Creates a monitor which notifies multiple monitors.
+     *
+     * @param monitors monitors to be notified
+     * @return combined monitor
+     */
+    static NestedSetMonitor composite(NestedSetMonitor... monitors) {
+        return operation -> {
+            final List<Observation> observations = new ArrayList<>(monitors.length);
+
+            for (NestedSetMonitor monitor : monitors) {
+                observations.add(monitor.start(operation));
+            }
+            return statistics -> observations.forEach(observation -> observation.stop(statistics));
+        };
+    }
+
+    /**
+     * Running observation of a single operation.
+     */
+    @FunctionalInterface
+    interface Observation {
+
+        /**
+         * Called on the thread of the operation when it has finished, even if it failed.
+         *
+         * @param statistics statistics of the operation
+         */
+        void stop(OperationStatistics statistics);
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2022. Werner Elsler
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.wernz0r.nestedsets4jooq.monitoring;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Statistics of a single operation of a nested set dao.
+ */
+public final class OperationStatistics {
+
+    private final String operation;
+
+    private final Duration duration;
+
+    private final int statements;
+
+    private final List<Integer> rowsShifted;
+
+    private final Throwable failure;
+
+    /**
+     * Constructor
+     *
+     * @param operation   name of the operation
+     * @param duration    total time of the operation
+     * @param statements  number of executed statements, a batch counts as one statement
+     * @param rowsShifted number of rows affected by each statement which shifted the values of existing nodes
+     * @param failure     exception thrown by the operation, or null if it succeeded
+     */
+    public OperationStatistics(String operation, Duration duration, int statements, List<Integer> rowsShifted,
+                               Throwable failure) {
+        this.operation = operation;
+        this.duration = duration;
+        this.statements = statements;
+        this.rowsShifted = Collections.unmodifiableList(rowsShifted);
+        this.failure = failure;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public Duration getDuration() {
+        return duration;
+    }
+
+    public int getStatements() {
+        return statements;
+    }
+
+    /**
+     * Returns the number of rows affected by each statement which shifted the values of existing nodes, in the order
+     * of execution. This is the write amplification of the operation.
+     *
+     * @return rows affected per shift
+     */
+    public List<Integer> getRowsShifted() {
+        return rowsShifted;
+    }
+
+    /**
+     * Returns the number of rows affected by all statements which shifted the values of existing nodes.
+     *
+     * @return total number of shifted rows
+     */
+    public long getTotalRowsShifted() {
+        long total = 0;
+
+        for (int rows : rowsShifted) {
+            total += rows;
+        }
+        return total;
+    }
+
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    public boolean isFailed() {
+        return failure != null;
+    }
+
+    @Override
+    public String toString() {
+        return operation + " [duration=" + duration + ", statements=" + statements + ", rowsShifted=" + rowsShifted
+                + ", failed=" + isFailed() + "]";
+    }
+}
@@ -0,0 +1,559 @@
+/*
+ * Copyright 2022. Werner Elsler
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.wernz0r.nestedsets4jooq.snapshot;
+
+import io.github.wernz0r.nestedsets4jooq.dao.AbstractNestedSetDao;
+import org.jooq.*;
+import org.jooq.Record;
+import org.jooq.impl.DSL;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Exports a tree into a compact binary snapshot and imports such a snapshot into an empty table or scope, e.g. to clone
+ * a tree between environments or to warm up caches. No node is mapped into the POJO type of the dao and no node is
+ * shifted by the import.
+ * <p>
+ * The nodes are written in the order of their left values in blocks of up to 1024 nodes. Within a block the values
+ * are stored column by column, each as a variable-length integer of 1 to 10 bytes:
+ * <ul>
+ *     <li>ID: difference to the previous ID, if the ID is an integer, otherwise as text</li>
+ *     <li>left value: difference to the previous left value</li>
+ *     <li>right value: difference to the own left value</li>
+ *     <li>level: difference to the previous level</li>
+ *     <li>additional fields passed to the export: tagged values</li>
+ * </ul>
+ * A densely numbered tree with consecutive IDs takes about 6 bytes per node, apart from the additional fields.
+ * <p>
+ * Nodes which are marked as deleted are not exported, so the gaps they leave are retained. A snapshot with gaps, e.g.
+ * of a sparse tree, can only be imported by a dao which does not rely on dense values, see
+ * {@link AbstractNestedSetDao#isGapless()}. Compact the tree before the export to avoid this. The IDs are imported as
+ * they are, so sequences or identity columns of the target table may have to be adjusted afterwards.
+ */
+public final class NestedSetSnapshot {
+
+    private static final byte[] MAGIC = {'N', 'S', 'S', 1};
+
+    private static final int BLOCK_SIZE = 1024;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final int FLAG_INTEGER_IDS = 1;
+
+    private static final int TAG_NULL = 0;
+
+    private static final int TAG_INTEGER = 1;
+
+    private static final int TAG_TEXT = 2;
+
+    private static final int TAG_TRUE = 3;
+
+    private static final int TAG_FALSE = 4;
+
+    private static final int TAG_BYTES = 5;
+
+    private NestedSetSnapshot() {
+    }
+
+    /**
+     * Exports the tree of a table without scope field.
+     *
+     * @param dao     nested set dao
+     * @param channel channel the snapshot is written to, which is not closed
+     * @param fields  additional fields to be exported, e.g. the name of a node
+     * @return number of exported nodes
+     */
+    public static long export(AbstractNestedSetDao<?, ?, ?, ?> dao, WritableByteChannel channel,
+                              Field<?>... fields) {
+        return export(dao, null, channel, fields);
+    }
+
+    /**
+     * Exports the tree of a scope. The scope itself is not exported, so the snapshot can be imported into any scope.
+     *
+     * @param dao     nested set dao
+     * @param scope   scope of the tree, which is ignored if the dao has no scope field
+     * @param channel channel the snapshot is written to, which is not closed
+     * @param fields  additional fields to be exported, e.g. the name of a node
+     * @return number of exported nodes
+     */
+    public static long export(AbstractNestedSetDao<?, ?, ?, ?> dao, Object scope, WritableByteChannel channel,
+                              Field<?>... fields) {
+        final boolean integerIds = isInteger(dao.getIdField().getType());
+        final Output output = new Output(channel);
+        final List<Field<?>> columns = new ArrayList<>(
+                List.of(dao.getIdField(), dao.getLeftField(), dao.getRightField(), dao.getLevelField()));
+        columns.addAll(Arrays.asList(fields));
+
+        output.bytes(MAGIC);
+        output.varint(integerIds ? FLAG_INTEGER_IDS : 0);
+        output.varint(fields.length);
+        for (Field<?> field : fields) {
+            output.text(field.getName());
+        }
+
+        final Object[] ids = new Object[BLOCK_SIZE];
+        final long[] left = new long[BLOCK_SIZE];
+        final long[] right = new long[BLOCK_SIZE];
+        final long[] level = new long[BLOCK_SIZE];
+        final Object[][] values = new Object[fields.length][BLOCK_SIZE];
+        final long[] previous = new long[3];
+        long count = 0;
+        int size = 0;
+
+        try (Cursor<Record> cursor = dao.ctx().select(columns)
+                .from(dao.getTable())
+                .where(inTree(dao, scope))
+                .and(notDeleted(dao))
+                .orderBy(dao.getLeftField().asc())
+                .fetchSize(BLOCK_SIZE)
+                .fetchLazy()) {
+
+            for (Record record : cursor) {
+                ids[size] = record.get(0);
+                left[size] = record.get(1, Long.class);
+                right[size] = record.get(2, Long.class);
+                level[size] = record.get(3, Long.class);
+                for (int i = 0; i < fields.length; i++) {
+                    values[i][size] = record.get(4 + i);
+                }
+
+                if (++size == BLOCK_SIZE) {
+                    writeBlock(output, integerIds, size, ids, left, right, level, values, previous);
+                    count += size;
+                    size = 0;
+                }
+            }
+        }
+
+        if (size > 0) {
+            writeBlock(output, integerIds, size, ids, left, right, level, values, previous);
+            count += size;
+        }
+        output.varint(0);
+        output.flush();
+
+        return count;
+    }
+
+    /**
+     * Imports a snapshot into a table without scope field, which must be empty. All nodes are inserted in a single
+     * transaction by batched inserts.
+     *
+     * @param dao     nested set dao
+     * @param channel channel the snapshot is read from, which is not closed
+     * @return number of imported nodes
+     */
+    public static long load(AbstractNestedSetDao<?, ?, ?, ?> dao, ReadableByteChannel channel) {
+        return load(dao, null, channel);
+    }
+
+    /**
+     * Imports a snapshot into a scope, which must not contain any node. All nodes are inserted in a single
+     * transaction by batched inserts. If the dao expects a densely numbered tree, the values are checked while they
+     * are read, and the transaction is rolled back, if the snapshot has gaps.
+     *
+     * @param dao     nested set dao
+     * @param scope   scope of the imported tree, which is ignored if the dao has no scope field
+     * @param channel channel the snapshot is read from, which is not closed
+     * @return number of imported nodes
+     */
+    public static long load(AbstractNestedSetDao<?, ?, ?, ?> dao, Object scope, ReadableByteChannel channel) {
+        return dao.transactionResult(() -> {
+            final DSLContext ctx = dao.ctx();
+
+            if (ctx.fetchExists(ctx.selectOne().from(dao.getTable()).where(inTree(dao, scope)))) {
+                throw new IllegalStateException("The tree to be imported into is not empty.");
+            }
+
+            final Input input = new Input(channel);
+
+            if (!Arrays.equals(MAGIC, input.bytes(MAGIC.length))) {
+                throw new IllegalArgumentException("Not a nested set snapshot.");
+            }
+
+            final boolean integerIds = (input.varint() & FLAG_INTEGER_IDS) != 0;
+            final List<Field<?>> columns = new ArrayList<>(
+                    List.of(dao.getIdField(), dao.getLeftField(), dao.getRightField(), dao.getLevelField()));
+            final int numberOfFields = (int) input.varint();
+
+            for (int i = 0; i < numberOfFields; i++) {
+                final String name = input.text();
+                final Field<?> field = dao.getTable().field(name);
+
+                if (field == null) {
+                    throw new IllegalArgumentException("Field " + name + " not found in " + dao.getTable() + ".");
+                }
+                columns.add(field);
+            }
+            if (dao.getScopeField() != null) {
+                columns.add(dao.getScopeField());
+            }
+
+            final Query insert = ctx.insertInto(dao.getTable(), columns).values(new Object[columns.size()]);
+            final DenseNumbering numbering = dao.isGapless() ? new DenseNumbering() : null;
+            final long[] previous = new long[3];
+            long count = 0;
+
+            for (int size = (int) input.varint(); size > 0; size = (int) input.varint()) {
+                final Object[][] rows = new Object[size][columns.size()];
+
+                for (int i = 0; i < size; i++) {
+                    if (integerIds) {
+                        previous[0] += zigzagDecode(input.varint());
+                        rows[i][0] = dao.getIdField().getDataType().convert(previous[0]);
+                    } else {
+                        rows[i][0] = dao.getIdField().getDataType().convert(input.text());
+                    }
+                }
+                for (int i = 0; i < size; i++) {
+                    previous[1] += input.varint();
+                    rows[i][1] = previous[1];
+                }
+                for (int i = 0; i < size; i++) {
+                    rows[i][2] = (Long) rows[i][1] + input.varint();
+                    if (numbering != null) {
+                        numbering.add((Long) rows[i][1], (Long) rows[i][2]);
+                    }
+                }
+                for (int i = 0; i < size; i++) {
+                    previous[2] += zigzagDecode(input.varint());
+                    rows[i][3] = previous[2];
+                }
+                for (int field = 0; field < numberOfFields; field++) {
+                    final DataType<?> type = columns.get(4 + field).getDataType();
+
+                    for (int i = 0; i < size; i++) {
+                        rows[i][4 + field] = type.convert(input.value());
+                    }
+                }
+
+                final BatchBindStep batch = ctx.batch(insert);
+
+                for (Object[] row : rows) {
+                    if (dao.getScopeField() != null) {
+                        row[row.length - 1] = scope;
+                    }
+                    batch.bind(row);
+                }
+                batch.execute();
+                count += size;
+            }
+            if (numbering != null) {
+                numbering.finish();
+            }
+
+            return count;
+        });
+    }
+
+    /**
+     * Writes a block of nodes column by column.
+     */
+    private static void writeBlock(Output output, boolean integerIds, int size, Object[] ids, long[] left,
+                                   long[] right, long[] level, Object[][] values, long[] previous) {
+        output.varint(size);
+
+        for (int i = 0; i < size; i++) {
+            if (integerIds) {
+                final long id = ((Number) ids[i]).longValue();
+
+                output.varint(zigzagEncode(id - previous[0]));
+                previous[0] = id;
+            } else {
+                output.text(String.valueOf(ids[i]));
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            output.varint(left[i] - previous[1]);
+            previous[1] = left[i];
+        }
+        for (int i = 0; i < size; i++) {
+            output.varint(right[i] - left[i]);
+        }
+        for (int i = 0; i < size; i++) {
+            output.varint(zigzagEncode(level[i] - previous[2]));
+            previous[2] = level[i];
+        }
+        for (Object[] column : values) {
+            for (int i = 0; i < size; i++) {
+                output.value(column[i]);
+            }
+        }
+    }
+
+    /**
+     * Returns a condition which restricts a statement to the tree of a scope.
+     */
+    @SuppressWarnings("unchecked")
+    private static Condition inTree(AbstractNestedSetDao<?, ?, ?, ?> dao, Object scope) {
+        if (dao.getScopeField() == null) {
+            return DSL.noCondition();
+        }
+
+        final Field<Object> scopeField = (Field<Object>) dao.getScopeField();
+
+        return scope == null ? scopeField.isNull() : scopeField.eq(scope);
+    }
+
+    /**
+     * Returns a condition which excludes nodes marked as deleted.
+     */
+    private static Condition notDeleted(AbstractNestedSetDao<?, ?, ?, ?> dao) {
+        return dao.getDeletedField() == null ? DSL.noCondition() : dao.getDeletedField().isDistinctFrom(true);
+    }
+
+    private static boolean isInteger(Class<?> type) {
+        return type == Long.class || type == Integer.class || type == Short.class || type == Byte.class;
+    }
+
+    private static long zigzagEncode(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long zigzagDecode(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Checks that the nodes of a tree, which are passed in the order of their left values, are numbered densely, i.e.
+     * that the left and right values of all nodes are exactly the values from 1 to twice the number of nodes.
+     */
+    private static final class DenseNumbering {
+
+        private long expected = 1;
+
+        private long[] open = new long[64];
+
+        private int depth;
+
+        /**
+         * Checks the left value of the next node and closes the subtrees which end before it.
+         *
+         * @param left  left value of the node
+         * @param right right value of the node
+         */
+        private void add(long left, long right) {
+            while (depth > 0 && open[depth - 1] < left) {
+                next(open[--depth]);
+            }
+            next(left);
+
+            if (depth == open.length) {
+                open = Arrays.copyOf(open, depth * 2);
+            }
+            open[depth++] = right;
+        }
+
+        /**
+         * Closes all subtrees which are still open after the last node.
+         */
+        private void finish() {
+            while (depth > 0) {
+                next(open[--depth]);
+            }
+        }
+
+        private void next(long value) {
+            if (value != expected) {
+                throw new IllegalArgumentException("The snapshot has a gap at value " + expected + ", which is not "
+                        + "allowed in a densely numbered tree. Compact the tree before the export.");
+            }
+            expected++;
+        }
+    }
+
+    /**
+     * Buffered writer of variable-length integers and tagged values.
+     */
+    private static final class Output {
+
+        private final WritableByteChannel channel;
+
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+        private Output(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        private void varint(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer.put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+        }
+
+        private void bytes(byte[] bytes) {
+            int offset = 0;
+
+            while (offset < bytes.length) {
+                ensure(1);
+                final int length = Math.min(buffer.remaining(), bytes.length - offset);
+
+                buffer.put(bytes, offset, length);
+                offset += length;
+            }
+        }
+
+        private void text(String text) {
+            final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+
+            varint(bytes.length);
+            bytes(bytes);
+        }
+
+        private void value(Object value) {
+            if (value == null) {
+                varint(TAG_NULL);
+            } else if (value instanceof Boolean) {
+                varint((Boolean) value ? TAG_TRUE : TAG_FALSE);
+            } else if (isInteger(value.getClass())) {
+                varint(TAG_INTEGER);
+                varint(zigzagEncode(((Number) value).longValue()));
+            } else if (value instanceof byte[]) {
+                varint(TAG_BYTES);
+                varint(((byte[]) value).length);
+                bytes((byte[]) value);
+            } else {
+                varint(TAG_TEXT);
+                text(value.toString());
+            }
+        }
+
+        private void ensure(int bytes) {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        private void flush() {
+            buffer.flip();
+            try {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Buffered reader of variable-length integers and tagged values.
+     */
+    private static final class Input {
+
+        private final ReadableByteChannel channel;
+
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).flip();
+
+        private Input(ReadableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        private long varint() {
+            long value = 0;
+
+            for (int shift = 0; shift < 64; shift += 7) {
+                final byte b = next();
+
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed variable-length integer.");
+        }
+
+        private byte[] bytes(int length) {
+            final byte[] bytes = new byte[length];
+            int offset = 0;
+
+            while (offset < length) {
+                fill();
+                final int chunk = Math.min(buffer.remaining(), length - offset);
+
+                buffer.get(bytes, offset, chunk);
+                offset += chunk;
+            }
+            return bytes;
+        }
+
+        private String text() {
+            return new String(bytes((int) varint()), StandardCharsets.UTF_8);
+        }
+
+        private Object value() {
+            final int tag = (int) varint();
+
+            switch (tag) {
+                case TAG_NULL:
+                    return null;
+                case TAG_INTEGER:
+                    return zigzagDecode(varint());
+                case TAG_TEXT:
+                    return text();
+                case TAG_TRUE:
+                    return Boolean.TRUE;
+                case TAG_FALSE:
+                    return Boolean.FALSE;
+                case TAG_BYTES:
+                    return bytes((int) varint());
+                default:
+                    throw new IllegalArgumentException("Unknown value tag " + tag + ".");
+            }
+        }
+
+        private byte next() {
+            fill();
+            return buffer.get();
+        }
+
+        private void fill() {
+            if (buffer.hasRemaining()) {
+                return;
+            }
+            buffer.clear();
+            try {
+                int read;
+
+                do {
+                    read = channel.read(buffer);
+                } while (read == 0);
+
+                if (read < 0) {
+                    throw new UncheckedIOException(new EOFException("Unexpected end of snapshot."));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            buffer.flip();
+        }
+    }
+}
@@ -16,13 +16,23 @@
 
 package io.github.wernz0r.nestedsets4jooq.dao;
 
+import io.github.wernz0r.nestedsets4jooq.exception.NodeNotFoundException;
 import io.github.wernz0r.nestedsets4jooq.helper.TestHelper;
 import io.github.wernz0r.nestedsets4jooq.model.CategoryNode;
+import io.github.wernz0r.nestedsets4jooq.model.NestedSetTree;
+import org.jooq.Configuration;
+import org.jooq.ExecuteListener;
+import org.jooq.SelectField;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.annotation.DirtiesContext;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static io.github.wernz0r.nestedsets4jooq.test.tables.Category.CATEGORY;
 import static org.junit.jupiter.api.Assertions.*;
 
 @SpringBootTest
@@ -31,9 +41,16 @@ public class AbstractNestedSetTest {
 
     public final NestedSetDao<CategoryNode> dao;
 
+    public final CategoryNestedSetDao categoryDao;
+
+    public final Configuration configuration;
+
     @Autowired
-    AbstractNestedSetTest(NestedSetDao<CategoryNode> dao) {
+    AbstractNestedSetTest(NestedSetDao<CategoryNode> dao, CategoryNestedSetDao categoryDao,
+                          Configuration configuration) {
         this.dao = dao;
+        this.categoryDao = categoryDao;
+        this.configuration = configuration;
     }
 
     @Test
@@ -86,6 +103,36 @@ public class AbstractNestedSetTest {
         assertTrue(TestHelper.contains(result, "secondChild", 4, 5, 1));
     }
 
+    @Test
+    public void insertSubtree() {
+        var parent = TestHelper.getNode("rootNode");
+        dao.insertAsRoot(parent);
+
+        var child1 = TestHelper.getNode("firstChild");
+        dao.insertAsLastChild(parent, child1);
+
+        var child2 = TestHelper.getNode("secondChild");
+        dao.insertAsLastChild(parent, child2);
+
+        var subtree = new NestedSetTree<>(TestHelper.getNode("newChild"));
+        var newGrandchild1 = subtree.addChild(TestHelper.getNode("firstNewGrandchild"));
+        newGrandchild1.addChild(TestHelper.getNode("firstNewGreatGrandchild"));
+        subtree.addChild(TestHelper.getNode("secondNewGrandchild"));
+
+        dao.insertSubtree(child1, subtree);
+
+        var result = dao.findAll();
+        assertEquals(7, result.size());
+
+        assertTrue(TestHelper.contains(result, "rootNode", 1, 14, 0));
+        assertTrue(TestHelper.contains(result, "firstChild", 2, 11, 1));
+        assertTrue(TestHelper.contains(result, "newChild", 3, 10, 2));
+        assertTrue(TestHelper.contains(result, "firstNewGrandchild", 4, 7, 3));
+        assertTrue(TestHelper.contains(result, "firstNewGreatGrandchild", 5, 6, 4));
+        assertTrue(TestHelper.contains(result, "secondNewGrandchild", 8, 9, 3));
+        assertTrue(TestHelper.contains(result, "secondChild", 12, 13, 1));
+    }
+
     @Test
     public void hasChildren() {
         var parent = TestHelper.getNode("rootNode");
@@ -142,6 +189,96 @@ public class AbstractNestedSetTest {
         assertTrue(TestHelper.contains(childrenOfChild1, "secondGrandchild", 5, 6, 2));
     }
 
+    @Test
+    public void getSiblings() {
+        var parent = TestHelper.getNode("rootNode");
+        dao.insertAsRoot(parent);
+
+        var child1 = TestHelper.getNode("firstChild");
+        dao.insertAsLastChild(parent, child1);
+
+        var child2 = TestHelper.getNode("secondChild");
+        dao.insertAsLastChild(parent, child2);
+
+        var child3 = TestHelper.getNode("thirdChild");
+        dao.insertAsLastChild(parent, child3);
+
+        var grandchild = TestHelper.getNode("firstGrandchild");
+        dao.insertAsLastChild(child1, grandchild);
+
+        assertEquals(List.of("firstChild", "thirdChild"), dao.getSiblings(child2).stream()
+                .map(CategoryNode::getName).collect(Collectors.toList()));
+        assertTrue(dao.getSiblings(grandchild).isEmpty());
+        assertTrue(dao.getSiblings(parent).isEmpty());
+
+        assertTrue(TestHelper.matches(dao.getNextSibling(child1), "secondChild", 6, 7, 1));
+        assertTrue(TestHelper.matches(dao.getPrevSibling(child3), "secondChild", 6, 7, 1));
+        assertNull(dao.getNextSibling(child3));
+        assertNull(dao.getPrevSibling(child1));
+        assertNull(dao.getNextSibling(grandchild));
+        assertNull(dao.getPrevSibling(parent));
+
+        assertTrue(TestHelper.matches(dao.getNthChild(parent, 0), "firstChild", 2, 5, 1));
+        assertTrue(TestHelper.matches(dao.getNthChild(parent, 2), "thirdChild", 8, 9, 1));
+        assertNull(dao.getNthChild(parent, 3));
+        assertThrows(IllegalArgumentException.class, () -> dao.getNthChild(parent, -1));
+    }
+
+    @Test
+    public void getChildrenBatch() {
+        var parent = TestHelper.getNode("rootNode");
+        categoryDao.insertAsRoot(parent);
+
+        var child1 = TestHelper.getNode("firstChild");
+        categoryDao.insertAsLastChild(parent, child1);
+
+        var child2 = TestHelper.getNode("secondChild");
+        categoryDao.insertAsLastChild(parent, child2);
+
+        var grandchild1 = TestHelper.getNode("firstGrandchild");
+        categoryDao.insertAsLastChild(child1, grandchild1);
+
+        var grandchild2 = TestHelper.getNode("secondGrandchild");
+        categoryDao.insertAsLastChild(child1, grandchild2);
+
+        var children = categoryDao.getChildrenBatch(List.of(child1, parent, child2));
+        assertEquals(List.of(child1.getId(), parent.getId(), child2.getId()), List.copyOf(children.keySet()));
+
+        assertEquals(List.of("firstChild", "secondChild"), children.get(parent.getId()).stream()
+                .map(CategoryNode::getName).collect(Collectors.toList()));
+        assertTrue(TestHelper.contains(children.get(child1.getId()), "firstGrandchild", 3, 4, 2));
+        assertTrue(TestHelper.contains(children.get(child1.getId()), "secondGrandchild", 5, 6, 2));
+        assertEquals(2, children.get(child1.getId()).size());
+        assertTrue(children.get(child2.getId()).isEmpty());
+
+        assertTrue(categoryDao.getChildrenBatch(List.of()).isEmpty());
+    }
+
+    @Test
+    public void countChildrenBatch() {
+        var parent = TestHelper.getNode("rootNode");
+        categoryDao.insertAsRoot(parent);
+
+        var child1 = TestHelper.getNode("firstChild");
+        categoryDao.insertAsLastChild(parent, child1);
+
+        var child2 = TestHelper.getNode("secondChild");
+        categoryDao.insertAsLastChild(parent, child2);
+
+        categoryDao.insertAsLastChild(child1, TestHelper.getNode("firstGrandchild"));
+        categoryDao.insertAsLastChild(child1, TestHelper.getNode("secondGrandchild"));
+        categoryDao.insertAsLastChild(child1, TestHelper.getNode("thirdGrandchild"));
+
+        var unknownNode = TestHelper.getNode("unknownNode");
+        unknownNode.setId(42L);
+
+        var counts = dao.countChildrenBatch(List.of(child1, parent, child2, unknownNode));
+        assertEquals(List.of(child1.getId(), parent.getId(), child2.getId(), 42L), List.copyOf(counts.keySet()));
+        assertEquals(List.of(3L, 2L, 0L, 0L), List.copyOf(counts.values()));
+
+        assertTrue(dao.countChildrenBatch(List.of()).isEmpty());
+    }
+
     @Test
     public void moveAsFirstChild() {
         var parent = TestHelper.getNode("rootNode");
@@ -265,6 +402,29 @@ public class AbstractNestedSetTest {
     }
 
 
+    @Test
+    public void moveIntoOwnSubtree() {
+        var parent = TestHelper.getNode("rootNode");
+        dao.insertAsRoot(parent);
+
+        var child1 = TestHelper.getNode("firstChild");
+        dao.insertAsLastChild(parent, child1);
+
+        var grandchild1 = TestHelper.getNode("firstGrandchild");
+        dao.insertAsLastChild(child1, grandchild1);
+
+        assertThrows(IllegalArgumentException.class, () -> dao.moveAsLastChild(child1, grandchild1));
+        assertThrows(IllegalArgumentException.class, () -> dao.moveAsFirstChild(parent, grandchild1));
+
+        var result = dao.findAll();
+        assertEquals(3, result.size());
+
+        assertTrue(TestHelper.contains(result, "rootNode", 1, 6, 0));
+        assertTrue(TestHelper.contains(result, "firstChild", 2, 5, 1));
+        assertTrue(TestHelper.contains(result, "firstGrandchild", 3, 4, 2));
+    }
+
+
     @Test
     public void insertAsPrevSiblingOf() {
         var parent = TestHelper.getNode("rootNode");
@@ -466,6 +626,30 @@ public class AbstractNestedSetTest {
         assertTrue(TestHelper.contains(result, "rootNode", 1, 8, 0));
     }
 
+    @Test
+    public void getAncestorsBatch() {
+        var parent = TestHelper.getNode("rootNode");
+        categoryDao.insertAsRoot(parent);
+
+        var child1 = TestHelper.getNode("firstChild");
+        categoryDao.insertAsLastChild(parent, child1);
+
+        var child2 = TestHelper.getNode("secondChild");
+        categoryDao.insertAsLastChild(parent, child2);
+
+        var grandchild = TestHelper.getNode("firstGrandchild");
+        categoryDao.insertAsLastChild(child1, grandchild);
+
+        var ancestors = categoryDao.getAncestorsBatch(List.of(grandchild, child2, parent));
+        assertEquals(List.of(grandchild.getId(), child2.getId(), parent.getId()), List.copyOf(ancestors.keySet()));
+
+        assertEquals(List.of("firstChild", "rootNode"), ancestors.get(grandchild.getId()).stream()
+                .map(CategoryNode::getName).collect(Collectors.toList()));
+        assertEquals(List.of("rootNode"), ancestors.get(child2.getId()).stream()
+                .map(CategoryNode::getName).collect(Collectors.toList()));
+        assertTrue(ancestors.get(parent.getId()).isEmpty());
+    }
+
     @Test
     public void getParent() {
         var parent = TestHelper.getNode("rootNode");
@@ -485,6 +669,35 @@ public class AbstractNestedSetTest {
 
         var parentOfGrandchild1 = dao.getParent(grandchild1);
         assertTrue(TestHelper.matches(parentOfGrandchild1, "firstChild", 2, 5, 1));
+
+        assertNull(dao.getParent(parent));
+
+        var unknown = TestHelper.getNode("unknownNode");
+        unknown.setId(42L);
+        assertThrows(NodeNotFoundException.class, () -> dao.getParent(unknown));
+    }
+
+    @Test
+    public void readRelativesOfUnknownNode() {
+        dao.insertAsRoot(TestHelper.getNode("rootNode"));
+
+        var unknown = TestHelper.getNode("unknownNode");
+        unknown.setId(42L);
+
+        // the relatives are read by a single query, which finds no row for the node
+        assertTrue(dao.getChildren(unknown).isEmpty());
+        assertTrue(dao.getDescendants(unknown).isEmpty());
+        assertTrue(dao.getAncestors(unknown).isEmpty());
+        assertTrue(dao.getSiblings(unknown).isEmpty());
+        assertFalse(dao.hasChildren(unknown));
+        assertEquals(0, dao.countDescendants(unknown));
+        assertNull(dao.getNextSibling(unknown));
+
+        assertThrows(NodeNotFoundException.class, () -> dao.fetch(unknown));
+        assertThrows(NodeNotFoundException.class, () -> dao.isRoot(unknown));
+        assertThrows(NodeNotFoundException.class, () -> dao.getSubtreeAsTree(unknown));
+        assertThrows(NodeNotFoundException.class, () -> dao.getParent(unknown));
+        assertThrows(NodeNotFoundException.class, () -> dao.insertAsLastChild(unknown, TestHelper.getNode("child")));
     }
 
     @Test
@@ -510,6 +723,70 @@ public class AbstractNestedSetTest {
         assertTrue(TestHelper.contains(result, "secondChild", 2, 3, 1));
     }
 
+    @Test
+    public void deleteAll() {
+        var parent = TestHelper.getNode("rootNode");
+        dao.insertAsRoot(parent);
+
+        var child1 = TestHelper.getNode("firstChild");
+        dao.insertAsLastChild(parent, child1);
+
+        var grandchild1 = TestHelper.getNode("firstGrandchild");
+        dao.insertAsLastChild(child1, grandchild1);
+
+        var child2 = TestHelper.getNode("secondChild");
+        dao.insertAsLastChild(parent, child2);
+
+        var child3 = TestHelper.getNode("thirdChild");
+        dao.insertAsLastChild(parent, child3);
+
+        var grandchild3 = TestHelper.getNode("thirdGrandchild");
+        dao.insertAsLastChild(child3, grandchild3);
+
+        // the first grandchild is deleted along with its parent
+        dao.deleteAll(List.of(grandchild3, grandchild1, child2, child1));
+
+        var result = dao.findAll();
+        assertEquals(2, result.size());
+
+        assertTrue(TestHelper.contains(result, "rootNode", 1, 4, 0));
+        assertTrue(TestHelper.contains(result, "thirdChild", 2, 3, 1));
+
+        var unknown = TestHelper.getNode("unknownNode");
+        unknown.setId(42L);
+
+        assertThrows(NodeNotFoundException.class, () -> dao.deleteAll(List.of(child3, unknown)));
+        assertEquals(2, dao.findAll().size());
+    }
+
+    @Test
+    public void countDescendants() {
+        var parent = TestHelper.getNode("rootNode");
+        categoryDao.insertAsRoot(parent);
+
+        var child1 = TestHelper.getNode("firstChild");
+        categoryDao.insertAsLastChild(parent, child1);
+
+        var child2 = TestHelper.getNode("secondChild");
+        categoryDao.insertAsLastChild(parent, child2);
+
+        var grandchild = TestHelper.getNode("firstGrandchild");
+        categoryDao.insertAsLastChild(child1, grandchild);
+
+        assertEquals(3, dao.countDescendants(parent));
+        assertEquals(2, dao.countChildren(parent));
+        assertEquals(1, dao.countDescendants(child1));
+        assertEquals(0, dao.countChildren(child2));
+
+        var unknownNode = TestHelper.getNode("unknownNode");
+        unknownNode.setId(42L);
+        assertEquals(0, dao.countDescendants(unknownNode));
+
+        var sizes = categoryDao.subtreeSizes(List.of(child1, parent, child2, unknownNode));
+        assertEquals(List.of(child1.getId(), parent.getId(), child2.getId(), 42L), List.copyOf(sizes.keySet()));
+        assertEquals(List.of(1L, 3L, 0L, 0L), List.copyOf(sizes.values()));
+    }
+
     @Test
     public void getDescendants() {
         var parent = TestHelper.getNode("rootNode");
@@ -547,6 +824,97 @@ public class AbstractNestedSetTest {
 
     }
 
+    @Test
+    public void getDescendantsPage() {
+        var parent = TestHelper.getNode("rootNode");
+        categoryDao.insertAsRoot(parent);
+
+        var child1 = TestHelper.getNode("firstChild");
+        categoryDao.insertAsLastChild(parent, child1);
+
+        categoryDao.insertAsLastChild(child1, TestHelper.getNode("firstGrandchild"));
+        categoryDao.insertAsLastChild(parent, TestHelper.getNode("secondChild"));
+        categoryDao.insertAsLastChild(parent, TestHelper.getNode("thirdChild"));
+
+        var firstPage = categoryDao.getDescendantsPage(parent, null, 2, 0);
+        assertEquals(List.of("firstChild", "firstGrandchild"), firstPage.stream()
+                .map(CategoryNode::getName).collect(Collectors.toList()));
+
+        var secondPage = categoryDao.getDescendantsPage(parent, firstPage.get(1).getLeft(), 2, 0);
+        assertEquals(List.of("secondChild", "thirdChild"), secondPage.stream()
+                .map(CategoryNode::getName).collect(Collectors.toList()));
+
+        assertTrue(categoryDao.getDescendantsPage(parent, secondPage.get(1).getLeft(), 2, 0).isEmpty());
+
+        // pages of the children only
+        var children = categoryDao.getDescendantsPage(parent, child1.getLeft(), 5, 1);
+        assertEquals(List.of("secondChild", "thirdChild"), children.stream()
+                .map(CategoryNode::getName).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void streamDescendants() {
+        var parent = TestHelper.getNode("rootNode");
+        dao.insertAsRoot(parent);
+
+        var child1 = TestHelper.getNode("firstChild");
+        dao.insertAsLastChild(parent, child1);
+
+        var grandchild1 = TestHelper.getNode("firstGrandchild");
+        dao.insertAsLastChild(child1, grandchild1);
+
+        var child2 = TestHelper.getNode("secondChild");
+        dao.insertAsLastChild(parent, child2);
+
+        try (var stream = dao.streamDescendants(parent)) {
+            var result = stream.collect(Collectors.toList());
+            assertEquals(3, result.size());
+
+            assertTrue(TestHelper.matches(result.get(0), "firstChild", 2, 5, 1));
+            assertTrue(TestHelper.matches(result.get(1), "firstGrandchild", 3, 4, 2));
+            assertTrue(TestHelper.matches(result.get(2), "secondChild", 6, 7, 1));
+        }
+
+        try (var stream = dao.streamDescendants(parent, 1)) {
+            assertEquals(2, stream.count());
+        }
+
+        try (var stream = dao.streamAll()) {
+            assertEquals(List.of("rootNode", "firstChild", "firstGrandchild", "secondChild"),
+                    stream.map(CategoryNode::getName).collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void readProjections() {
+        var parent = TestHelper.getNode("rootNode");
+        categoryDao.insertAsRoot(parent);
+
+        var child = TestHelper.getNode("firstChild");
+        categoryDao.insertAsLastChild(parent, child);
+
+        var grandchild = TestHelper.getNode("firstGrandchild");
+        categoryDao.insertAsLastChild(child, grandchild);
+
+        // only the fields for navigation and the requested fields are read
+        var descendants = categoryDao.getDescendants(parent, 0, CATEGORY.NAME);
+        assertEquals(2, descendants.size());
+        assertEquals("firstChild", descendants.get(0).get(CATEGORY.NAME));
+        assertEquals(2L, descendants.get(0).get(CATEGORY.LFT));
+        assertEquals(5, descendants.get(0).size());
+        assertNull(descendants.get(0).field(CATEGORY.PARENT_ID));
+
+        assertEquals(List.of("firstChild"), categoryDao.getDescendants(parent, 1,
+                record -> record.get(CATEGORY.NAME), CATEGORY.NAME));
+        assertEquals(List.of("firstChild", "rootNode"), categoryDao.getAncestors(grandchild, 0,
+                record -> record.get(CATEGORY.NAME), CATEGORY.NAME));
+        assertEquals(List.of(1L, 0L), categoryDao.getAncestors(grandchild, 0,
+                record -> record.get(CATEGORY.LEVEL)));
+        assertEquals(List.of("rootNode", "firstChild", "firstGrandchild"), categoryDao.findAll(
+                record -> record.get(CATEGORY.NAME), CATEGORY.NAME));
+        assertEquals(4, categoryDao.findAll(new SelectField<?>[0]).get(0).size());
+    }
+
     @Test
     public void getAncestors() {
         var parent = TestHelper.getNode("rootNode");
@@ -586,6 +954,31 @@ public class AbstractNestedSetTest {
         assertTrue(TestHelper.contains(result, "rootNode", 1, 12, 0));
     }
 
+    @Test
+    public void generationLimitedQueriesUseLevelRanges() {
+        var statements = new ArrayList<String>();
+        var recordingDao = new CategoryNestedSetDao(configuration.deriveAppending(
+                ExecuteListener.onExecuteEnd(ctx -> statements.add(ctx.sql().toLowerCase()))));
+
+        var parent = TestHelper.getNode("rootNode");
+        recordingDao.insertAsRoot(parent);
+
+        var child = TestHelper.getNode("firstChild");
+        recordingDao.insertAsLastChild(parent, child);
+
+        statements.clear();
+        assertEquals(1, recordingDao.getChildren(parent).size());
+        assertEquals(1, recordingDao.getAncestors(child, 2).size());
+        assertEquals(1, recordingDao.getDescendants(parent).size());
+
+        assertEquals(3, statements.size());
+        assertTrue(statements.get(0).contains("\"level\" = (\"nested_set_node\".\"level\" +"), statements.get(0));
+        assertTrue(statements.get(1).contains("\"level\" between"), statements.get(1));
+        assertFalse(statements.get(2).substring(statements.get(2).indexOf(" where ")).contains("\"level\""),
+                statements.get(2));
+        statements.forEach(sql -> assertFalse(sql.contains(" or "), sql));
+    }
+
     @Test
     public void getNodeAndAllDescendants() {
         var parent = TestHelper.getNode("rootNode");
@@ -620,6 +1013,50 @@ public class AbstractNestedSetTest {
         assertTrue(TestHelper.contains(result, "secondGrandchild", 9, 10, 2));
     }
 
+    @Test
+    public void getSubtreeAsTree() {
+        var parent = TestHelper.getNode("rootNode");
+        dao.insertAsRoot(parent);
+
+        var child1 = TestHelper.getNode("firstChild");
+        dao.insertAsLastChild(parent, child1);
+
+        var grandchild1 = TestHelper.getNode("firstGrandchild");
+        dao.insertAsLastChild(child1, grandchild1);
+
+        var greatGrandchild = TestHelper.getNode("firstGreatGrandchild");
+        dao.insertAsLastChild(grandchild1, greatGrandchild);
+
+        var child2 = TestHelper.getNode("secondChild");
+        dao.insertAsLastChild(parent, child2);
+
+        var grandchild2 = TestHelper.getNode("secondGrandchild");
+        dao.insertAsLastChild(child2, grandchild2);
+
+        var tree = dao.getSubtreeAsTree(parent);
+        assertTrue(TestHelper.matches(tree.getNode(), "rootNode", 1, 12, 0));
+        assertEquals(2, tree.getChildren().size());
+
+        var firstChild = tree.getChildren().get(0);
+        assertTrue(TestHelper.matches(firstChild.getNode(), "firstChild", 2, 7, 1));
+        assertEquals(1, firstChild.getChildren().size());
+
+        var firstGrandchild = firstChild.getChildren().get(0);
+        assertTrue(TestHelper.matches(firstGrandchild.getNode(), "firstGrandchild", 3, 6, 2));
+        assertEquals(1, firstGrandchild.getChildren().size());
+        assertTrue(TestHelper.matches(firstGrandchild.getChildren().get(0).getNode(), "firstGreatGrandchild", 4, 5, 3));
+
+        var secondChild = tree.getChildren().get(1);
+        assertTrue(TestHelper.matches(secondChild.getNode(), "secondChild", 8, 11, 1));
+        assertEquals(1, secondChild.getChildren().size());
+        assertTrue(TestHelper.matches(secondChild.getChildren().get(0).getNode(), "secondGrandchild", 9, 10, 2));
+
+        tree = dao.getSubtreeAsTree(child1, 1);
+        assertTrue(TestHelper.matches(tree.getNode(), "firstChild", 2, 7, 1));
+        assertEquals(1, tree.getChildren().size());
+        assertTrue(tree.getChildren().get(0).getChildren().isEmpty());
+    }
+
     @Test
     public void isRoot() {
         var parent = TestHelper.getNode("rootNode");
@@ -631,4 +1068,106 @@ public class AbstractNestedSetTest {
         assertTrue(dao.isRoot(parent));
         assertFalse(dao.isRoot(child1));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void rebuild() {
+        var root = TestHelper.getNode("rootNode");
+        categoryDao.insert(root);
+
+        var child2 = TestHelper.getNode("secondChild");
+        child2.setParentId(root.getId());
+        categoryDao.insert(child2);
+
+        var child1 = TestHelper.getNode("firstChild");
+        child1.setParentId(root.getId());
+        categoryDao.insert(child1);
+
+        var grandchild1 = TestHelper.getNode("firstGrandchild");
+        grandchild1.setParentId(child2.getId());
+        categoryDao.insert(grandchild1);
+
+        categoryDao.rebuild(CATEGORY.PARENT_ID, CATEGORY.NAME);
+
+        var result = dao.findAll();
+        assertEquals(4, result.size());
+
+        assertTrue(TestHelper.contains(result, "rootNode", 1, 8, 0));
+        assertTrue(TestHelper.contains(result, "firstChild", 2, 3, 1));
+        assertTrue(TestHelper.contains(result, "secondChild", 4, 7, 1));
+        assertTrue(TestHelper.contains(result, "firstGrandchild", 5, 6, 2));
+    }
+
+    @Test
+    public void rebuildWithUnknownParent() {
+        var root = TestHelper.getNode("rootNode");
+        categoryDao.insert(root);
+
+        var child1 = TestHelper.getNode("firstChild");
+        child1.setParentId(root.getId() + 100);
+        categoryDao.insert(child1);
+
+        assertThrows(NodeNotFoundException.class, () -> categoryDao.rebuild(CATEGORY.PARENT_ID, CATEGORY.NAME));
+    }
+
+    @Test
+    public void shiftWithTwoStatements() {
+        var twoStatementDao = new CategoryNestedSetDao(categoryDao.configuration()) {
+            @Override
+            protected boolean isSingleStatementShift() {
+                return false;
+            }
+        };
+
+        var parent = TestHelper.getNode("rootNode");
+        twoStatementDao.insertAsRoot(parent);
+
+        var child1 = TestHelper.getNode("firstChild");
+        twoStatementDao.insertAsLastChild(parent, child1);
+
+        var child2 = TestHelper.getNode("secondChild");
+        twoStatementDao.insertAsFirstChild(parent, child2);
+        twoStatementDao.insertAsLastChild(child1, TestHelper.getNode("firstGrandchild"));
+
+        twoStatementDao.delete(child2);
+
+        var result = twoStatementDao.findAll();
+        assertEquals(3, result.size());
+
+        assertTrue(TestHelper.contains(result, "rootNode", 1, 6, 0));
+        assertTrue(TestHelper.contains(result, "firstChild", 2, 5, 1));
+        assertTrue(TestHelper.contains(result, "firstGrandchild", 3, 4, 2));
+    }
+
+    @Test
+    public void insertInTrustedMode() {
+        var trustedDao = new CategoryNestedSetDao(categoryDao.configuration()) {
+            @Override
+            protected boolean isTrustedMode() {
+                return true;
+            }
+        };
+
+        var parent = TestHelper.getNode("rootNode");
+        trustedDao.insertAsRoot(parent);
+
+        var child1 = TestHelper.getNode("firstChild");
+        trustedDao.insertAsLastChild(parent, child1);
+
+        var result = trustedDao.findAll();
+        assertEquals(2, result.size());
+
+        assertTrue(TestHelper.contains(result, "rootNode", 1, 4, 0));
+        assertTrue(TestHelper.contains(result, "firstChild", 2, 3, 1));
+
+        // the values of the passed node are used without reading the node again
+        var child2 = TestHelper.getNode("secondChild");
+        trustedDao.insertAsLastChild(TestHelper.getByName(result, "rootNode"), child2);
+
+        result = trustedDao.findAll();
+        assertEquals(3, result.size());
+
+        assertTrue(TestHelper.contains(result, "rootNode", 1, 6, 0));
+        assertTrue(TestHelper.contains(result, "firstChild", 2, 3, 1));
+        assertTrue(TestHelper.contains(result, "secondChild", 4, 5, 1));
+    }
+}
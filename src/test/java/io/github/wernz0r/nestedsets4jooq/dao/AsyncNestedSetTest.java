@@ -0,0 +1,197 @@
+/*
+ * Copyright 2022. Werner Elsler
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.wernz0r.nestedsets4jooq.dao;
+
+import io.github.wernz0r.nestedsets4jooq.helper.TestHelper;
+import io.github.wernz0r.nestedsets4jooq.model.CategoryNode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class AsyncNestedSetTest {
+
+    public final CategoryNestedSetDao syncDao;
+
+    public final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    public final AsyncNestedSetDao<CategoryNode, Long> dao;
+
+    @Autowired
+    AsyncNestedSetTest(CategoryNestedSetDao syncDao) {
+        this.syncDao = syncDao;
+        this.dao = new AsyncNestedSetDao<>(syncDao, executor);
+    }
+
+    @AfterEach
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void writeAndRead() throws Exception {
+        var parent = TestHelper.getNode("rootNode");
+        var child1 = TestHelper.getNode("firstChild");
+        var child2 = TestHelper.getNode("secondChild");
+        var grandchild = TestHelper.getNode("firstGrandchild");
+
+        dao.insertAsRoot(parent)
+                .thenCompose(ignored -> dao.insertAsLastChild(parent, child1))
+                .thenCompose(ignored -> dao.insertAsLastChild(parent, child2))
+                .thenCompose(ignored -> dao.insertAsFirstChild(child1, grandchild))
+                .toCompletableFuture().get(10, TimeUnit.SECONDS);
+
+        var children = dao.getChildren(parent).toCompletableFuture().get(10, TimeUnit.SECONDS);
+        assertEquals(List.of("firstChild", "secondChild"), names(children));
+
+        // request one node at a time
+        var subscriber = new CollectingSubscriber(1, Long.MAX_VALUE);
+        dao.streamDescendants(parent).subscribe(subscriber);
+
+        var descendants = subscriber.completion.get(10, TimeUnit.SECONDS);
+        assertEquals(List.of("firstChild", "firstGrandchild", "secondChild"), names(descendants));
+
+        var batch = dao.getChildrenBatch(List.of(parent, child1)).toCompletableFuture().get(10, TimeUnit.SECONDS);
+        assertEquals(List.of("firstGrandchild"), names(batch.get(child1.getId())));
+        assertEquals(Map.of(parent.getId(), 3L), dao.subtreeSizes(List.of(parent))
+                .toCompletableFuture().get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void mirrorEveryOperation() {
+        // methods which are called on the decorated dao, see the documentation of AsyncNestedSetDao
+        var excluded = Set.of("getLeftField", "getRightField", "getLevelField", "getIdField", "getScopeField",
+                "getDeletedField", "isGapless", "configuration", "checkIndexes", "transactionResult",
+                "afterTransaction");
+
+        for (Method method : AbstractNestedSetDao.class.getDeclaredMethods()) {
+            if (!Modifier.isPublic(method.getModifiers()) || method.isBridge() || method.isSynthetic()
+                    || excluded.contains(method.getName())) {
+                continue;
+            }
+            assertDoesNotThrow(() -> AsyncNestedSetDao.class.getMethod(method.getName(), method.getParameterTypes()),
+                    "AsyncNestedSetDao lacks " + method);
+        }
+    }
+
+    @Test
+    public void cancelStream() throws Exception {
+        var parent = TestHelper.getNode("rootNode");
+        syncDao.insertAsRoot(parent);
+        syncDao.insertAsLastChild(parent, TestHelper.getNode("firstChild"));
+        syncDao.insertAsLastChild(parent, TestHelper.getNode("secondChild"));
+
+        var subscriber = new CollectingSubscriber(1, 1);
+        dao.streamDescendants(parent).subscribe(subscriber);
+
+        var descendants = subscriber.completion.get(10, TimeUnit.SECONDS);
+        assertEquals(List.of("firstChild"), names(descendants));
+    }
+
+    @Test
+    public void failedWriteIsRolledBack() {
+        var parent = TestHelper.getNode("rootNode");
+        syncDao.insertAsRoot(parent);
+
+        var failure = assertThrows(CompletionException.class,
+                () -> dao.moveAsFirstChild(parent, parent).toCompletableFuture().join());
+        assertInstanceOf(IllegalArgumentException.class, failure.getCause());
+
+        // all statements of a transaction are rolled back
+        assertThrows(IllegalStateException.class, () -> syncDao.transactionResult(() -> {
+            syncDao.insertAsLastChild(parent, TestHelper.getNode("firstChild"));
+            throw new IllegalStateException();
+        }));
+
+        var result = syncDao.findAll();
+        assertEquals(1, result.size());
+        assertTrue(TestHelper.contains(result, "rootNode", 1, 2, 0));
+    }
+
+    private static List<String> names(List<CategoryNode> nodes) {
+        return nodes.stream().map(CategoryNode::getName).collect(Collectors.toList());
+    }
+
+    /**
+     * Requests a fixed number of nodes at a time and cancels the subscription after a maximum number of nodes.
+     */
+    private static final class CollectingSubscriber implements Flow.Subscriber<CategoryNode> {
+
+        private final long batchSize;
+
+        private final long maximum;
+
+        private final List<CategoryNode> nodes = new CopyOnWriteArrayList<>();
+
+        private final CompletableFuture<List<CategoryNode>> completion = new CompletableFuture<>();
+
+        private Flow.Subscription subscription;
+
+        private CollectingSubscriber(long batchSize, long maximum) {
+            this.batchSize = batchSize;
+            this.maximum = maximum;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(batchSize);
+        }
+
+        @Override
+        public void onNext(CategoryNode node) {
+            nodes.add(node);
+
+            if (nodes.size() >= maximum) {
+                subscription.cancel();
+                completion.complete(nodes);
+            } else if (nodes.size() % batchSize == 0) {
+                subscription.request(batchSize);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            completion.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            completion.complete(nodes);
+        }
+    }
+}
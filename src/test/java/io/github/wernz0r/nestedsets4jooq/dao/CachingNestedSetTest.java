@@ -0,0 +1,240 @@
+/*
+ * Copyright 2022. Werner Elsler
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.wernz0r.nestedsets4jooq.dao;
+
+import io.github.wernz0r.nestedsets4jooq.exception.NodeNotFoundException;
+import io.github.wernz0r.nestedsets4jooq.helper.TestHelper;
+import io.github.wernz0r.nestedsets4jooq.model.CategoryNode;
+import org.jooq.Configuration;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class CachingNestedSetTest {
+
+    public final NestedSetDao<CategoryNode> uncachedDao;
+
+    public final CachingNestedSetDao<CategoryNode> dao;
+
+    public final Configuration configuration;
+
+    @Autowired
+    CachingNestedSetTest(NestedSetDao<CategoryNode> uncachedDao, Configuration configuration) {
+        this.uncachedDao = uncachedDao;
+        this.dao = new CachingNestedSetDao<>(uncachedDao);
+        this.configuration = configuration;
+    }
+
+    @Test
+    public void readFromSnapshot() {
+        var parent = TestHelper.getNode("rootNode");
+        dao.insertAsRoot(parent);
+
+        var child1 = TestHelper.getNode("firstChild");
+        dao.insertAsLastChild(parent, child1);
+
+        var grandchild1 = TestHelper.getNode("firstGrandchild");
+        dao.insertAsLastChild(child1, grandchild1);
+
+        var greatGrandchild = TestHelper.getNode("firstGreatGrandchild");
+        dao.insertAsLastChild(grandchild1, greatGrandchild);
+
+        var child2 = TestHelper.getNode("secondChild");
+        dao.insertAsLastChild(parent, child2);
+
+        var result = dao.getDescendants(parent);
+        assertEquals(uncachedDao.getDescendants(parent), result);
+        assertEquals(4, result.size());
+
+        assertEquals(uncachedDao.getDescendants(parent, 1), dao.getChildren(parent));
+        assertEquals(uncachedDao.getDescendants(child1, 2), dao.getDescendants(child1, 2));
+        assertEquals(uncachedDao.getNodeAndAllDescendants(child1), dao.getNodeAndAllDescendants(child1));
+        assertEquals(uncachedDao.getAncestors(greatGrandchild), dao.getAncestors(greatGrandchild));
+        assertEquals(uncachedDao.getAncestors(greatGrandchild, 2), dao.getAncestors(greatGrandchild, 2));
+        assertEquals(uncachedDao.countDescendants(child1), dao.countDescendants(child1));
+        assertEquals(uncachedDao.countChildren(parent), dao.countChildren(parent));
+        assertEquals(uncachedDao.getSiblings(child2), dao.getSiblings(child2));
+        assertEquals(uncachedDao.getPrevSibling(child2), dao.getPrevSibling(child2));
+        assertEquals(uncachedDao.getNthChild(parent, 1), dao.getNthChild(parent, 1));
+        assertNull(dao.getNextSibling(child2));
+        assertTrue(TestHelper.matches(dao.getParent(child2), "rootNode", 1, 10, 0));
+        assertNull(dao.getParent(parent));
+        var unknown = TestHelper.getNode("unknownNode");
+        unknown.setId(42L);
+        assertThrows(NodeNotFoundException.class, () -> dao.getParent(unknown));
+
+        assertTrue(dao.hasChildren(grandchild1));
+        assertFalse(dao.hasChildren(child2));
+        assertTrue(dao.isRoot(parent));
+        assertFalse(dao.isRoot(child1));
+
+        var tree = dao.getSubtreeAsTree(parent);
+        assertEquals(2, tree.getChildren().size());
+        assertEquals(1, tree.getChildren().get(0).getChildren().size());
+    }
+
+    @Test
+    public void readSiblingsFromSnapshot() {
+        var parent = TestHelper.getNode("rootNode");
+        dao.insertAsRoot(parent);
+
+        var child1 = TestHelper.getNode("firstChild");
+        dao.insertAsLastChild(parent, child1);
+        dao.insertAsLastChild(child1, TestHelper.getNode("firstGrandchild"));
+
+        var child2 = TestHelper.getNode("secondChild");
+        dao.insertAsLastChild(parent, child2);
+
+        var grandchild2 = TestHelper.getNode("secondGrandchild");
+        dao.insertAsLastChild(child2, grandchild2);
+        dao.insertAsLastChild(grandchild2, TestHelper.getNode("firstGreatGrandchild"));
+
+        var child3 = TestHelper.getNode("thirdChild");
+        dao.insertAsLastChild(parent, child3);
+
+        var otherRoot = TestHelper.getNode("otherRoot");
+        dao.insertAsRoot(otherRoot);
+
+        for (var node : uncachedDao.findAll()) {
+            assertEquals(uncachedDao.getChildren(node), dao.getChildren(node));
+            assertEquals(uncachedDao.countChildren(node), dao.countChildren(node));
+            assertEquals(uncachedDao.countDescendants(node), dao.countDescendants(node));
+            assertEquals(uncachedDao.getDescendants(node, 1), dao.getDescendants(node, 1));
+            assertEquals(uncachedDao.getDescendants(node, 2), dao.getDescendants(node, 2));
+            assertEquals(uncachedDao.getNthChild(node, 2), dao.getNthChild(node, 2));
+            assertEquals(uncachedDao.getPrevSibling(node), dao.getPrevSibling(node));
+        }
+
+        assertEquals(List.of("firstChild", "thirdChild"),
+                dao.getSiblings(child2).stream().map(CategoryNode::getName).collect(Collectors.toList()));
+        assertEquals("thirdChild", dao.getNextSibling(child2).getName());
+        assertNull(dao.getNextSibling(child3));
+        assertNull(dao.getNextSibling(parent));
+        assertTrue(dao.getSiblings(otherRoot).isEmpty());
+
+        var unknown = TestHelper.getNode("unknownNode");
+        unknown.setId(42L);
+
+        var batch = new ArrayList<>(uncachedDao.findAll());
+        batch.add(unknown);
+        assertEquals(uncachedDao.getChildrenBatch(batch), dao.getChildrenBatch(batch));
+        assertEquals(uncachedDao.countChildrenBatch(batch), dao.countChildrenBatch(batch));
+        assertEquals(uncachedDao.subtreeSizes(batch), dao.subtreeSizes(batch));
+        assertEquals(uncachedDao.getAncestorsBatch(batch), dao.getAncestorsBatch(batch));
+
+        assertEquals(0, dao.countChildren(unknown));
+        assertEquals(0, dao.countDescendants(unknown));
+        assertNull(dao.getNthChild(unknown, 0));
+        assertNull(dao.getPrevSibling(unknown));
+    }
+
+    @Test
+    public void invalidateOnModification() {
+        var parent = TestHelper.getNode("rootNode");
+        dao.insertAsRoot(parent);
+
+        var child1 = TestHelper.getNode("firstChild");
+        dao.insertAsLastChild(parent, child1);
+
+        assertEquals(1, dao.getChildren(parent).size());
+
+        // modifications which bypass the cache are not visible until the cache is invalidated
+        uncachedDao.insertAsLastChild(parent, TestHelper.getNode("secondChild"));
+        assertEquals(1, dao.getChildren(parent).size());
+
+        dao.invalidate();
+        assertEquals(2, dao.getChildren(parent).size());
+
+        dao.delete(child1);
+
+        var result = dao.findAll();
+        assertEquals(2, result.size());
+        assertTrue(TestHelper.contains(result, "rootNode", 1, 4, 0));
+        assertTrue(TestHelper.contains(result, "secondChild", 2, 3, 1));
+    }
+
+    @Test
+    public void dropSnapshotReadDuringModification() throws Exception {
+        var loaded = new CountDownLatch(1);
+        var proceed = new CountDownLatch(1);
+        var blockingDao = new CategoryNestedSetDao(configuration) {
+            @Override
+            public List<CategoryNode> findAll() {
+                var nodes = super.findAll();
+
+                // the first snapshot is read before the modification and cached after it
+                if (loaded.getCount() > 0) {
+                    loaded.countDown();
+                    await(proceed);
+                }
+                return nodes;
+            }
+        };
+        var cachingDao = new CachingNestedSetDao<>(blockingDao);
+
+        var parent = TestHelper.getNode("rootNode");
+        cachingDao.insertAsRoot(parent);
+
+        var reader = CompletableFuture.supplyAsync(cachingDao::findAll);
+        assertTrue(loaded.await(10, TimeUnit.SECONDS));
+
+        cachingDao.insertAsLastChild(parent, TestHelper.getNode("firstChild"));
+        proceed.countDown();
+
+        assertEquals(1, reader.get(10, TimeUnit.SECONDS).size());
+        assertEquals(2, cachingDao.findAll().size());
+    }
+
+    @Test
+    public void dropSnapshotAfterTransaction() throws Exception {
+        var categoryDao = (CategoryNestedSetDao) uncachedDao;
+
+        var parent = TestHelper.getNode("rootNode");
+        dao.insertAsRoot(parent);
+
+        categoryDao.transactionResult(() -> {
+            dao.insertAsLastChild(parent, TestHelper.getNode("firstChild"));
+
+            // another thread cannot see the uncommitted child and caches the old tree
+            var nodes = CompletableFuture.supplyAsync(dao::findAll).join();
+            assertEquals(1, nodes.size());
+            return null;
+        });
+
+        assertEquals(2, dao.findAll().size());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
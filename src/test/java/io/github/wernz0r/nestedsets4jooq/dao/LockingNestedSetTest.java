@@ -0,0 +1,191 @@
+/*
+ * Copyright 2022. Werner Elsler
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.wernz0r.nestedsets4jooq.dao;
+
+import io.github.wernz0r.nestedsets4jooq.exception.ConcurrentTreeModificationException;
+import io.github.wernz0r.nestedsets4jooq.helper.TestHelper;
+import io.github.wernz0r.nestedsets4jooq.lock.AdvisoryLockStrategy;
+import io.github.wernz0r.nestedsets4jooq.lock.LockStrategy;
+import io.github.wernz0r.nestedsets4jooq.lock.OptimisticLockStrategy;
+import io.github.wernz0r.nestedsets4jooq.lock.RowLockStrategy;
+import io.github.wernz0r.nestedsets4jooq.model.CategoryNode;
+import org.jooq.Configuration;
+import org.jooq.SQLDialect;
+import org.jooq.impl.DSL;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static io.github.wernz0r.nestedsets4jooq.test.tables.Category.CATEGORY;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class LockingNestedSetTest {
+
+    private final Configuration configuration;
+
+    private final DataSource dataSource;
+
+    @Autowired
+    LockingNestedSetTest(Configuration configuration, DataSource dataSource) {
+        this.configuration = configuration;
+        this.dataSource = dataSource;
+    }
+
+    @Test
+    public void concurrentInsertsWithRowLock() throws Exception {
+        var dao = dao(new RowLockStrategy(), new AtomicInteger());
+
+        var parent = TestHelper.getNode("rootNode");
+        dao.insertAsRoot(parent);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(3);
+        final List<Future<?>> futures = new ArrayList<>();
+
+        try {
+            for (int thread = 0; thread < 3; thread++) {
+                final int number = thread;
+
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 10; i++) {
+                        dao.insertAsLastChild(parent, TestHelper.getNode("child" + number + "_" + i));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // every value is used exactly once
+        var result = dao.findAll();
+        assertEquals(31, result.size());
+        assertTrue(TestHelper.contains(result, "rootNode", 1, 62, 0));
+        assertEquals(LongStream.rangeClosed(1, 62).boxed().collect(Collectors.toList()), result.stream()
+                .flatMap(node -> Stream.of(node.getLeft(), node.getRight()))
+                .sorted()
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void optimisticRetry() {
+        var conflicts = new AtomicInteger(1);
+        var dao = dao(new OptimisticLockStrategy(CATEGORY.VERSION), conflicts);
+
+        var parent = TestHelper.getNode("rootNode");
+        dao.insertAsRoot(parent);
+
+        var child = TestHelper.getNode("firstChild");
+        dao.insertAsLastChild(parent, child);
+
+        // the first attempt is rolled back, the concurrent modification and the retry are committed
+        var result = dao.findAll();
+        assertEquals(2, result.size());
+        assertTrue(TestHelper.contains(result, "rootNode", 1, 4, 0));
+        assertTrue(TestHelper.contains(result, "firstChild", 2, 3, 1));
+        assertEquals(0, conflicts.get());
+        assertEquals(2L, DSL.using(configuration).select(CATEGORY.VERSION).from(CATEGORY)
+                .where(CATEGORY.LEVEL.eq(0L)).fetchOne(CATEGORY.VERSION));
+    }
+
+    @Test
+    public void optimisticGiveUp() {
+        var dao = dao(new OptimisticLockStrategy(CATEGORY.VERSION, 2), new AtomicInteger(2));
+
+        var parent = TestHelper.getNode("rootNode");
+        dao.insertAsRoot(parent);
+
+        assertThrows(ConcurrentTreeModificationException.class,
+                () -> dao.insertAsLastChild(parent, TestHelper.getNode("firstChild")));
+
+        var result = dao.findAll();
+        assertEquals(1, result.size());
+        assertTrue(TestHelper.contains(result, "rootNode", 1, 2, 0));
+    }
+
+    @Test
+    public void optimisticDeleteRoot() {
+        var dao = dao(new OptimisticLockStrategy(CATEGORY.VERSION), new AtomicInteger());
+
+        var parent = TestHelper.getNode("rootNode");
+        dao.insertAsRoot(parent);
+        dao.insertAsLastChild(parent, TestHelper.getNode("firstChild"));
+
+        // the version of a deleted tree cannot be incremented, which is no conflict
+        dao.delete(parent);
+        assertTrue(dao.findAll().isEmpty());
+
+        var root = TestHelper.getNode("rootNode");
+        dao.insertAsRoot(root);
+        var child = TestHelper.getNode("firstChild");
+        dao.insertAsLastChild(root, child);
+
+        dao.deleteAll(List.of(child, root));
+        assertTrue(dao.findAll().isEmpty());
+    }
+
+    @Test
+    public void advisoryLockRequiresPostgres() {
+        var dao = dao(new AdvisoryLockStrategy(), new AtomicInteger());
+
+        var parent = TestHelper.getNode("rootNode");
+        dao.insertAsRoot(parent);
+
+        assertThrows(IllegalStateException.class,
+                () -> dao.insertAsLastChild(parent, TestHelper.getNode("firstChild")));
+    }
+
+    /**
+     * Creates a dao using the given lock strategy. As long as there are conflicts left, each read of a node is
+     * preceded by a modification of the tree in another transaction.
+     */
+    private CategoryNestedSetDao dao(LockStrategy lockStrategy, AtomicInteger conflicts) {
+        return new CategoryNestedSetDao(configuration) {
+            @Override
+            protected LockStrategy getLockStrategy() {
+                return lockStrategy;
+            }
+
+            @Override
+            public CategoryNode fetch(CategoryNode node) {
+                if (conflicts.getAndUpdate(value -> Math.max(value - 1, 0)) > 0) {
+                    DSL.using(dataSource, SQLDialect.H2)
+                            .update(CATEGORY)
+                            .set(CATEGORY.VERSION, DSL.coalesce(CATEGORY.VERSION, 0L).plus(1L))
+                            .where(CATEGORY.LEVEL.eq(0L))
+                            .execute();
+                }
+                return super.fetch(node);
+            }
+        };
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2022. Werner Elsler
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.wernz0r.nestedsets4jooq.dao;
+
+import io.github.wernz0r.nestedsets4jooq.exception.NodeNotFoundException;
+import io.github.wernz0r.nestedsets4jooq.helper.TestHelper;
+import io.github.wernz0r.nestedsets4jooq.model.CategoryNode;
+import io.github.wernz0r.nestedsets4jooq.monitoring.MicrometerNestedSetMonitor;
+import io.github.wernz0r.nestedsets4jooq.monitoring.NestedSetMonitor;
+import io.github.wernz0r.nestedsets4jooq.monitoring.OperationStatistics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.jooq.Configuration;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class MonitoredNestedSetTest {
+
+    public final NestedSetDao<CategoryNode> dao;
+
+    public final List<OperationStatistics> operations = new ArrayList<>();
+
+    public final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Autowired
+    MonitoredNestedSetTest(Configuration configuration) {
+        final NestedSetMonitor monitor = NestedSetMonitor.composite(
+                operation -> operations::add,
+                new MicrometerNestedSetMonitor(registry));
+
+        this.dao = new CategoryNestedSetDao(configuration) {
+            @Override
+            protected NestedSetMonitor getMonitor() {
+                return monitor;
+            }
+        };
+    }
+
+    @Test
+    public void recordStatementsAndShifts() {
+        var parent = TestHelper.getNode("rootNode");
+        dao.insertAsRoot(parent);
+
+        var child1 = TestHelper.getNode("firstChild");
+        dao.insertAsLastChild(parent, child1);
+
+        var child2 = TestHelper.getNode("secondChild");
+        dao.insertAsFirstChild(parent, child2);
+
+        dao.getChildren(parent);
+
+        assertEquals(4, operations.size());
+
+        var insertRoot = operations.get(0);
+        assertEquals("insertAsRoot", insertRoot.getOperation());
+        assertEquals(1, insertRoot.getStatements());
+        assertTrue(insertRoot.getRowsShifted().isEmpty());
+
+        // read the parent, shift the root and the first child, insert the second child
+        var insertChild = operations.get(2);
+        assertEquals("insertAsFirstChild", insertChild.getOperation());
+        assertEquals(3, insertChild.getStatements());
+        assertEquals(List.of(2), insertChild.getRowsShifted());
+        assertFalse(insertChild.isFailed());
+
+        // nested operations are not reported separately
+        assertEquals("getChildren", operations.get(3).getOperation());
+        assertEquals(1, operations.get(3).getStatements());
+
+        assertEquals(1, registry.get("nestedsets.operation").tag("operation", "insertAsLastChild").timer().count());
+        assertEquals(2.0, registry.get("nestedsets.rows.shifted").tag("operation", "insertAsFirstChild").summary()
+                .totalAmount());
+    }
+
+    @Test
+    public void recordFailure() {
+        var node = TestHelper.getNode("unknownNode");
+        node.setId(42L);
+
+        assertThrows(NodeNotFoundException.class, () -> dao.delete(node));
+
+        assertEquals(1, operations.size());
+        assertTrue(operations.get(0).isFailed());
+        assertEquals(1, registry.get("nestedsets.operation").tag("outcome", "failure").timer().count());
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2022. Werner Elsler
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.wernz0r.nestedsets4jooq.dao;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import io.github.wernz0r.nestedsets4jooq.test.tables.records.CategoryRecord;
+import org.jooq.Configuration;
+import org.jooq.Query;
+import org.jooq.TableField;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static io.github.wernz0r.nestedsets4jooq.test.tables.Category.CATEGORY;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class NestedSetIndexesTest {
+
+    public final CategoryNestedSetDao dao;
+
+    public final CategoryNestedSetDao scopedDao;
+
+    @Autowired
+    NestedSetIndexesTest(Configuration configuration) {
+        this.dao = new CategoryNestedSetDao(configuration);
+        this.scopedDao = new CategoryNestedSetDao(configuration) {
+            @Override
+            public TableField<CategoryRecord, ?> getScopeField() {
+                return CATEGORY.TREE_ID;
+            }
+        };
+    }
+
+    @Test
+    public void recommend() {
+        var indexes = NestedSetIndexes.recommend(dao);
+        assertEquals(List.of("category_lft_rgt", "category_level_lft"), names(indexes));
+
+        var scopedIndexes = NestedSetIndexes.recommend(scopedDao);
+        assertEquals(List.of("category_tree_id_lft_rgt", "category_tree_id_level_lft"), names(scopedIndexes));
+        assertEquals(CATEGORY.TREE_ID.getName(), scopedIndexes.get(0).getFields().get(0).getName());
+    }
+
+    @Test
+    public void findMissing() {
+        // schema.sql only contains the indexes for a single tree
+        assertTrue(NestedSetIndexes.findMissing(dao).isEmpty());
+        assertEquals(2, NestedSetIndexes.findMissing(scopedDao).size());
+
+        NestedSetIndexes.createStatements(scopedDao).forEach(Query::execute);
+
+        assertTrue(NestedSetIndexes.findMissing(scopedDao).isEmpty());
+    }
+
+    @Test
+    public void warnIfMissingOnFirstUse() {
+        var logger = (Logger) LoggerFactory.getLogger(NestedSetIndexes.class);
+        var appender = new ListAppender<ILoggingEvent>();
+        appender.start();
+        logger.addAppender(appender);
+
+        try {
+            // the scope field of the subclass is not initialized, while the super constructor runs
+            var checkedDao = new IndexCheckedDao(dao.configuration(), CATEGORY.TREE_ID);
+            assertTrue(appender.list.isEmpty());
+
+            checkedDao.findAll();
+            assertEquals(2, appender.list.size());
+            assertTrue(appender.list.get(0).getFormattedMessage().contains("TREE_ID"));
+
+            // the indexes are only checked once
+            checkedDao.findAll();
+            assertEquals(2, appender.list.size());
+        } finally {
+            logger.detachAppender(appender);
+        }
+    }
+
+    private static List<String> names(List<NestedSetIndexes.RecommendedIndex> indexes) {
+        return indexes.stream().map(NestedSetIndexes.RecommendedIndex::getName).collect(Collectors.toList());
+    }
+
+    private static class IndexCheckedDao extends CategoryNestedSetDao {
+
+        private final TableField<CategoryRecord, ?> scopeField;
+
+        IndexCheckedDao(Configuration configuration, TableField<CategoryRecord, ?> scopeField) {
+            super(configuration);
+            this.scopeField = scopeField;
+        }
+
+        @Override
+        public TableField<CategoryRecord, ?> getScopeField() {
+            return scopeField;
+        }
+
+        @Override
+        protected boolean isIndexCheckEnabled() {
+            return scopeField != null;
+        }
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright 2022. Werner Elsler
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.wernz0r.nestedsets4jooq.dao;
+
+import io.github.wernz0r.nestedsets4jooq.helper.TestHelper;
+import io.github.wernz0r.nestedsets4jooq.model.CategoryNode;
+import io.github.wernz0r.nestedsets4jooq.test.tables.records.CategoryRecord;
+import org.jooq.Configuration;
+import org.jooq.TableField;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.util.List;
+
+import static io.github.wernz0r.nestedsets4jooq.test.tables.Category.CATEGORY;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class ScopedNestedSetTest {
+
+    public final CategoryNestedSetDao dao;
+
+    @Autowired
+    ScopedNestedSetTest(Configuration configuration) {
+        this.dao = new CategoryNestedSetDao(configuration) {
+            @Override
+            public TableField<CategoryRecord, ?> getScopeField() {
+                return CATEGORY.TREE_ID;
+            }
+        };
+    }
+
+    /**
+     * Creates the root of a tree with a given scope.
+     *
+     * @param name   name of the root
+     * @param treeId scope of the tree
+     * @return root node
+     */
+    private CategoryNode insertRoot(String name, long treeId) {
+        var root = TestHelper.getNode(name);
+        root.setTreeId(treeId);
+        dao.insertAsRoot(root);
+        return root;
+    }
+
+    @Test
+    public void insertInSeparateTrees() {
+        var firstRoot = insertRoot("firstRoot", 1L);
+        var secondRoot = insertRoot("secondRoot", 2L);
+
+        var child1 = TestHelper.getNode("firstChild");
+        dao.insertAsLastChild(firstRoot, child1);
+
+        var child2 = TestHelper.getNode("secondChild");
+        dao.insertAsFirstChild(firstRoot, child2);
+
+        var child3 = TestHelper.getNode("thirdChild");
+        dao.insertAsLastChild(secondRoot, child3);
+
+        var result = dao.findAll();
+        assertEquals(5, result.size());
+
+        assertTrue(TestHelper.contains(result, "firstRoot", 1, 6, 0));
+        assertTrue(TestHelper.contains(result, "secondChild", 2, 3, 1));
+        assertTrue(TestHelper.contains(result, "firstChild", 4, 5, 1));
+        assertTrue(TestHelper.contains(result, "secondRoot", 1, 4, 0));
+        assertTrue(TestHelper.contains(result, "thirdChild", 2, 3, 1));
+
+        assertEquals(2L, TestHelper.getByName(result, "thirdChild").getTreeId());
+        assertEquals(2, dao.getDescendants(firstRoot).size());
+        assertEquals(1, dao.getAncestors(child3).size());
+        assertEquals("secondRoot", dao.getParent(child3).getName());
+    }
+
+    @Test
+    public void moveAndDeleteInSeparateTrees() {
+        var firstRoot = insertRoot("firstRoot", 1L);
+        var secondRoot = insertRoot("secondRoot", 2L);
+
+        var child1 = TestHelper.getNode("firstChild");
+        dao.insertAsLastChild(firstRoot, child1);
+
+        var child2 = TestHelper.getNode("secondChild");
+        dao.insertAsLastChild(firstRoot, child2);
+
+        var child3 = TestHelper.getNode("thirdChild");
+        dao.insertAsLastChild(secondRoot, child3);
+
+        dao.moveAsFirstChild(child2, child1);
+
+        assertThrows(IllegalArgumentException.class, () -> dao.moveAsFirstChild(child3, child1));
+
+        var result = dao.findAll();
+        assertTrue(TestHelper.contains(result, "firstRoot", 1, 6, 0));
+        assertTrue(TestHelper.contains(result, "firstChild", 2, 5, 1));
+        assertTrue(TestHelper.contains(result, "secondChild", 3, 4, 2));
+        assertTrue(TestHelper.contains(result, "secondRoot", 1, 4, 0));
+        assertTrue(TestHelper.contains(result, "thirdChild", 2, 3, 1));
+
+        dao.delete(child1);
+
+        result = dao.findAll();
+        assertEquals(3, result.size());
+        assertTrue(TestHelper.contains(result, "firstRoot", 1, 2, 0));
+        assertTrue(TestHelper.contains(result, "secondRoot", 1, 4, 0));
+        assertTrue(TestHelper.contains(result, "thirdChild", 2, 3, 1));
+    }
+
+    @Test
+    public void deleteAllInSeparateTrees() {
+        var firstRoot = insertRoot("firstRoot", 1L);
+        var secondRoot = insertRoot("secondRoot", 2L);
+
+        var child1 = TestHelper.getNode("firstChild");
+        dao.insertAsLastChild(firstRoot, child1);
+
+        var child2 = TestHelper.getNode("secondChild");
+        dao.insertAsLastChild(firstRoot, child2);
+
+        var child3 = TestHelper.getNode("thirdChild");
+        dao.insertAsLastChild(secondRoot, child3);
+
+        var child4 = TestHelper.getNode("fourthChild");
+        dao.insertAsLastChild(secondRoot, child4);
+
+        dao.deleteAll(List.of(child1, child3));
+
+        var result = dao.findAll();
+        assertEquals(4, result.size());
+        assertTrue(TestHelper.contains(result, "firstRoot", 1, 4, 0));
+        assertTrue(TestHelper.contains(result, "secondChild", 2, 3, 1));
+        assertTrue(TestHelper.contains(result, "secondRoot", 1, 4, 0));
+        assertTrue(TestHelper.contains(result, "fourthChild", 2, 3, 1));
+    }
+
+    @Test
+    public void rebuildSeparateTrees() {
+        var firstRoot = TestHelper.getNode("firstRoot");
+        firstRoot.setTreeId(1L);
+        dao.insert(firstRoot);
+
+        var secondRoot = TestHelper.getNode("secondRoot");
+        secondRoot.setTreeId(2L);
+        dao.insert(secondRoot);
+
+        var child1 = TestHelper.getNode("firstChild");
+        child1.setTreeId(2L);
+        child1.setParentId(secondRoot.getId());
+        dao.insert(child1);
+
+        dao.rebuild(CATEGORY.PARENT_ID, CATEGORY.NAME);
+
+        var result = dao.findAll();
+        assertEquals(3, result.size());
+
+        assertTrue(TestHelper.contains(result, "firstRoot", 1, 2, 0));
+        assertTrue(TestHelper.contains(result, "secondRoot", 1, 4, 0));
+        assertTrue(TestHelper.contains(result, "firstChild", 2, 3, 1));
+    }
+
+    @Test
+    public void rebuildRejectsTwoRootsInScope() {
+        var firstRoot = TestHelper.getNode("firstRoot");
+        firstRoot.setTreeId(1L);
+        dao.insert(firstRoot);
+
+        var secondRoot = TestHelper.getNode("secondRoot");
+        secondRoot.setTreeId(1L);
+        dao.insert(secondRoot);
+
+        assertThrows(IllegalStateException.class, () -> dao.rebuild(CATEGORY.PARENT_ID, CATEGORY.NAME));
+    }
+
+    @Test
+    public void rebuildRejectsParentInOtherScope() {
+        var firstRoot = TestHelper.getNode("firstRoot");
+        firstRoot.setTreeId(1L);
+        dao.insert(firstRoot);
+
+        var secondRoot = TestHelper.getNode("secondRoot");
+        secondRoot.setTreeId(2L);
+        dao.insert(secondRoot);
+
+        var child1 = TestHelper.getNode("firstChild");
+        child1.setTreeId(2L);
+        child1.setParentId(firstRoot.getId());
+        dao.insert(child1);
+
+        assertThrows(IllegalStateException.class, () -> dao.rebuild(CATEGORY.PARENT_ID, CATEGORY.NAME));
+    }
+
+    @Test
+    public void insertInTrustedModeWithoutScope() {
+        var trustedDao = new CategoryNestedSetDao(dao.configuration()) {
+            @Override
+            public TableField<CategoryRecord, ?> getScopeField() {
+                return CATEGORY.TREE_ID;
+            }
+
+            @Override
+            protected boolean isTrustedMode() {
+                return true;
+            }
+        };
+
+        insertRoot("firstRoot", 1L);
+        var secondRoot = insertRoot("secondRoot", 2L);
+
+        // the node carries its values, but not its scope, so it is read from the database
+        var parent = TestHelper.getNode("secondRoot");
+        parent.setId(secondRoot.getId());
+        parent.setLeft(secondRoot.getLeft());
+        parent.setRight(secondRoot.getRight());
+        parent.setLevel(secondRoot.getLevel());
+
+        trustedDao.insertAsLastChild(parent, TestHelper.getNode("firstChild"));
+
+        var result = dao.findAll();
+        assertEquals(3, result.size());
+
+        assertTrue(TestHelper.contains(result, "firstRoot", 1, 2, 0));
+        assertTrue(TestHelper.contains(result, "secondRoot", 1, 4, 0));
+        assertTrue(TestHelper.contains(result, "firstChild", 2, 3, 1));
+        assertEquals(2L, TestHelper.getByName(result, "firstChild").getTreeId());
+    }
+}
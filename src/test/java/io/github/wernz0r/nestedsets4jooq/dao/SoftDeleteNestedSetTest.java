@@ -0,0 +1,127 @@
+/*
+ * Copyright 2022. Werner Elsler
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.wernz0r.nestedsets4jooq.dao;
+
+import io.github.wernz0r.nestedsets4jooq.exception.NodeNotFoundException;
+import io.github.wernz0r.nestedsets4jooq.helper.TestHelper;
+import io.github.wernz0r.nestedsets4jooq.model.CategoryNode;
+import io.github.wernz0r.nestedsets4jooq.test.tables.records.CategoryRecord;
+import org.jooq.Configuration;
+import org.jooq.TableField;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.util.List;
+
+import static io.github.wernz0r.nestedsets4jooq.test.tables.Category.CATEGORY;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class SoftDeleteNestedSetTest {
+
+    public final CategoryNestedSetDao dao;
+
+    @Autowired
+    SoftDeleteNestedSetTest(Configuration configuration) {
+        this.dao = new CategoryNestedSetDao(configuration) {
+            @Override
+            public TableField<CategoryRecord, Boolean> getDeletedField() {
+                return CATEGORY.DELETED;
+            }
+        };
+    }
+
+    @Test
+    public void deleteMarksSubtree() {
+        var parent = TestHelper.getNode("rootNode");
+        dao.insertAsRoot(parent);
+
+        var child1 = TestHelper.getNode("firstChild");
+        dao.insertAsLastChild(parent, child1);
+
+        var grandchild1 = TestHelper.getNode("firstGrandchild");
+        dao.insertAsLastChild(child1, grandchild1);
+
+        var child2 = TestHelper.getNode("secondChild");
+        dao.insertAsLastChild(parent, child2);
+
+        dao.delete(child1);
+
+        // the gap is left in place
+        var result = dao.findAll();
+        assertEquals(2, result.size());
+        assertTrue(TestHelper.contains(result, "rootNode", 1, 8, 0));
+        assertTrue(TestHelper.contains(result, "secondChild", 6, 7, 1));
+
+        assertEquals(4, dao.count());
+        assertEquals(1, dao.getChildren(parent).size());
+        assertEquals("secondChild", dao.getChildren(parent).get(0).getName());
+        assertEquals(1, dao.getDescendants(parent).size());
+        assertEquals(1, dao.countDescendants(parent));
+        assertNull(dao.getPrevSibling(child2));
+        assertTrue(dao.getSiblings(child2).isEmpty());
+        assertEquals(1, dao.countChildren(parent));
+        assertEquals(1L, dao.subtreeSizes(List.of(parent)).get(parent.getId()));
+        assertFalse(dao.hasChildren(child1));
+        assertTrue(dao.getAncestors(grandchild1).isEmpty());
+        assertThrows(NodeNotFoundException.class, () -> dao.fetch(child1));
+        assertThrows(NodeNotFoundException.class, () -> dao.insertAsLastChild(child1, TestHelper.getNode("child")));
+
+        // new nodes are inserted around the deleted nodes
+        var child3 = TestHelper.getNode("thirdChild");
+        dao.insertAsFirstChild(parent, child3);
+
+        result = dao.findAll();
+        assertTrue(TestHelper.contains(result, "rootNode", 1, 10, 0));
+        assertTrue(TestHelper.contains(result, "thirdChild", 2, 3, 1));
+        assertTrue(TestHelper.contains(result, "secondChild", 8, 9, 1));
+    }
+
+    @Test
+    public void compact() {
+        var parent = TestHelper.getNode("rootNode");
+        dao.insertAsRoot(parent);
+
+        var child1 = TestHelper.getNode("firstChild");
+        dao.insertAsLastChild(parent, child1);
+
+        var grandchild1 = TestHelper.getNode("firstGrandchild");
+        dao.insertAsLastChild(child1, grandchild1);
+
+        var child2 = TestHelper.getNode("secondChild");
+        dao.insertAsLastChild(parent, child2);
+
+        var child3 = TestHelper.getNode("thirdChild");
+        dao.insertAsLastChild(parent, child3);
+
+        dao.delete(grandchild1);
+        dao.deleteAll(List.of(child1, child3));
+
+        assertEquals(5, dao.count());
+        assertEquals(3, dao.compact());
+        assertEquals(0, dao.compact());
+
+        var result = dao.findAll();
+        assertEquals(2, result.size());
+        assertEquals(2, dao.count());
+        assertTrue(TestHelper.contains(result, "rootNode", 1, 4, 0));
+        assertTrue(TestHelper.contains(result, "secondChild", 2, 3, 1));
+    }
+}
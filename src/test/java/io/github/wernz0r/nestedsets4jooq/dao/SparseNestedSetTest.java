@@ -0,0 +1,204 @@
+/*
+ * Copyright 2022. Werner Elsler
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.wernz0r.nestedsets4jooq.dao;
+
+import io.github.wernz0r.nestedsets4jooq.helper.TestHelper;
+import io.github.wernz0r.nestedsets4jooq.model.CategoryNode;
+import org.jooq.Configuration;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class SparseNestedSetTest {
+
+    public final CategoryNestedSetDao dao;
+
+    public final CategoryNestedSetDao denseDao;
+
+    @Autowired
+    SparseNestedSetTest(Configuration configuration) {
+        this.denseDao = new CategoryNestedSetDao(configuration);
+        this.dao = new CategoryNestedSetDao(configuration) {
+            @Override
+            protected long getGapSize() {
+                return 4L;
+            }
+        };
+    }
+
+    @Test
+    public void insertWithoutShifting() {
+        var parent = TestHelper.getNode("rootNode");
+        dao.insertAsRoot(parent);
+
+        var child1 = TestHelper.getNode("firstChild");
+        dao.insertAsLastChild(parent, child1);
+
+        var result = dao.findAll();
+        assertEquals(2, result.size());
+
+        assertTrue(TestHelper.contains(result, "rootNode", 1, 5, 0));
+        assertTrue(TestHelper.contains(result, "firstChild", 2, 4, 1));
+
+        // there are no free values left, so the tree is renumbered
+        var child2 = TestHelper.getNode("secondChild");
+        dao.insertAsLastChild(parent, child2);
+
+        result = dao.findAll();
+        assertEquals(3, result.size());
+
+        assertTrue(TestHelper.contains(result, "rootNode", 1, 13, 0));
+        assertTrue(TestHelper.contains(result, "firstChild", 5, 9, 1));
+        assertTrue(TestHelper.contains(result, "secondChild", 10, 12, 1));
+        // the bounds of a sparse tree do not reflect the number of descendants
+        assertEquals(2, dao.countDescendants(parent));
+        assertEquals(2, dao.countChildren(parent));
+        assertEquals(0, dao.countDescendants(child1));
+        assertEquals(Map.of(parent.getId(), 2L, child2.getId(), 0L), dao.subtreeSizes(List.of(parent, child2)));
+
+        // there are gaps between siblings
+        assertEquals("secondChild", dao.getNextSibling(child1).getName());
+        assertEquals("firstChild", dao.getPrevSibling(child2).getName());
+        assertNull(dao.getNextSibling(child2));
+        assertNull(dao.getPrevSibling(child1));
+    }
+
+    @Test
+    public void insertManyNodes() {
+        var parent = TestHelper.getNode("rootNode");
+        dao.insertAsRoot(parent);
+
+        var child1 = TestHelper.getNode("firstChild");
+        dao.insertAsLastChild(parent, child1);
+
+        var child2 = TestHelper.getNode("secondChild");
+        dao.insertAsLastChild(parent, child2);
+
+        for (int i = 0; i < 5; i++) {
+            dao.insertAsFirstChild(child1, TestHelper.getNode("grandchild" + i));
+        }
+
+        var sibling = TestHelper.getNode("firstSibling");
+        dao.insertAsNextSibling(child1, sibling);
+
+        var prevSibling = TestHelper.getNode("prevSibling");
+        dao.insertAsPrevSibling(child2, prevSibling);
+
+        var result = dao.findAll();
+        assertEquals(List.of("rootNode", "firstChild", "grandchild4", "grandchild3", "grandchild2", "grandchild1",
+                        "grandchild0", "firstSibling", "prevSibling", "secondChild"),
+                result.stream().map(CategoryNode::getName).collect(Collectors.toList()));
+
+        assertEquals(5, dao.getChildren(child1).size());
+        assertEquals(4, dao.getChildren(parent).size());
+        assertTrue(dao.hasChildren(child1));
+        assertFalse(dao.hasChildren(child2));
+        assertEquals("firstChild", dao.getParent(TestHelper.getByName(result, "grandchild2")).getName());
+    }
+
+    @Test
+    public void rejectSiblingOfRoot() {
+        var parent = TestHelper.getNode("rootNode");
+        dao.insertAsRoot(parent);
+
+        // sparse and dense numbering reject a sibling of a root the same way
+        for (CategoryNestedSetDao anyDao : List.of(dao, denseDao)) {
+            var prev = assertThrows(IllegalArgumentException.class,
+                    () -> anyDao.insertAsPrevSibling(parent, TestHelper.getNode("prevSibling")));
+            var next = assertThrows(IllegalArgumentException.class,
+                    () -> anyDao.insertAsNextSibling(parent, TestHelper.getNode("nextSibling")));
+
+            assertEquals("Cannot add a sibling to the root node with id " + parent.getId() + ".", prev.getMessage());
+            assertEquals(prev.getMessage(), next.getMessage());
+        }
+        assertEquals(1, dao.findAll().size());
+    }
+
+    @Test
+    public void rejectMoveNextToRoot() {
+        var parent = TestHelper.getNode("rootNode");
+        dao.insertAsRoot(parent);
+
+        var child1 = TestHelper.getNode("firstChild");
+        dao.insertAsLastChild(parent, child1);
+
+        var expected = dao.findAll();
+
+        // sparse and dense numbering reject a move next to a root the same way
+        for (CategoryNestedSetDao anyDao : List.of(dao, denseDao)) {
+            var prev = assertThrows(IllegalArgumentException.class, () -> anyDao.moveAsPrevSibling(child1, parent));
+            var next = assertThrows(IllegalArgumentException.class, () -> anyDao.moveAsNextSibling(child1, parent));
+
+            assertEquals("Cannot add a sibling to the root node with id " + parent.getId() + ".", prev.getMessage());
+            assertEquals(prev.getMessage(), next.getMessage());
+        }
+        assertEquals(expected, dao.findAll());
+    }
+
+    @Test
+    public void deleteKeepsGap() {
+        var parent = TestHelper.getNode("rootNode");
+        dao.insertAsRoot(parent);
+
+        var child1 = TestHelper.getNode("firstChild");
+        dao.insertAsLastChild(parent, child1);
+
+        var grandchild1 = TestHelper.getNode("firstGrandchild");
+        dao.insertAsLastChild(child1, grandchild1);
+
+        dao.delete(grandchild1);
+
+        var result = dao.findAll();
+        assertEquals(2, result.size());
+
+        assertTrue(TestHelper.contains(result, "rootNode", 1, 13, 0));
+        assertTrue(TestHelper.contains(result, "firstChild", 5, 9, 1));
+        assertFalse(dao.hasChildren(child1));
+    }
+
+    @Test
+    public void moveAsFirstChild() {
+        var parent = TestHelper.getNode("rootNode");
+        dao.insertAsRoot(parent);
+
+        var child1 = TestHelper.getNode("firstChild");
+        dao.insertAsLastChild(parent, child1);
+
+        var grandchild1 = TestHelper.getNode("firstGrandchild");
+        dao.insertAsLastChild(child1, grandchild1);
+
+        var child2 = TestHelper.getNode("secondChild");
+        dao.insertAsLastChild(parent, child2);
+
+        dao.moveAsFirstChild(child2, child1);
+
+        var result = dao.findAll();
+        assertEquals(List.of("rootNode", "firstChild", "secondChild", "firstGrandchild"),
+                result.stream().map(CategoryNode::getName).collect(Collectors.toList()));
+        assertEquals(2, TestHelper.getByName(result, "secondChild").getLevel());
+        assertEquals(2, dao.getChildren(child1).size());
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2022. Werner Elsler
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.wernz0r.nestedsets4jooq.snapshot;
+
+import io.github.wernz0r.nestedsets4jooq.dao.CategoryNestedSetDao;
+import io.github.wernz0r.nestedsets4jooq.helper.TestHelper;
+import io.github.wernz0r.nestedsets4jooq.model.CategoryNode;
+import io.github.wernz0r.nestedsets4jooq.test.tables.records.CategoryRecord;
+import org.jooq.Configuration;
+import org.jooq.TableField;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.github.wernz0r.nestedsets4jooq.test.tables.Category.CATEGORY;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class NestedSetSnapshotTest {
+
+    public final CategoryNestedSetDao dao;
+
+    public final CategoryNestedSetDao scopedDao;
+
+    @Autowired
+    NestedSetSnapshotTest(Configuration configuration) {
+        this.dao = new CategoryNestedSetDao(configuration);
+        this.scopedDao = new CategoryNestedSetDao(configuration) {
+            @Override
+            public TableField<CategoryRecord, ?> getScopeField() {
+                return CATEGORY.TREE_ID;
+            }
+        };
+    }
+
+    @Test
+    public void exportAndLoad() {
+        var root = TestHelper.getNode("rootNode");
+        dao.insertAsRoot(root);
+        var child1 = TestHelper.getNode("firstChild");
+        dao.insertAsLastChild(root, child1);
+        var child2 = TestHelper.getNode("secondChild");
+        dao.insertAsLastChild(root, child2);
+        var grandChild = TestHelper.getNode("grandChild");
+        dao.insertAsLastChild(child1, grandChild);
+
+        var expected = dao.findAll();
+        var output = new ByteArrayOutputStream();
+        assertEquals(4, NestedSetSnapshot.export(dao, Channels.newChannel(output), CATEGORY.NAME));
+
+        dao.ctx().deleteFrom(CATEGORY).execute();
+
+        var input = new ByteArrayInputStream(output.toByteArray());
+        assertEquals(4, NestedSetSnapshot.load(dao, Channels.newChannel(input)));
+
+        var result = dao.findAll();
+        assertEquals(expected.size(), result.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getId(), result.get(i).getId());
+            assertTrue(TestHelper.matches(result.get(i), expected.get(i).getName(), expected.get(i).getLeft(),
+                    expected.get(i).getRight(), expected.get(i).getLevel()));
+        }
+
+        // the table is not empty anymore
+        var again = new ByteArrayInputStream(output.toByteArray());
+        assertThrows(IllegalStateException.class, () -> NestedSetSnapshot.load(dao, Channels.newChannel(again)));
+    }
+
+    @Test
+    public void loadIntoOtherScope() {
+        var firstRoot = TestHelper.getNode("firstRoot");
+        firstRoot.setTreeId(1L);
+        scopedDao.insertAsRoot(firstRoot);
+        scopedDao.insertAsLastChild(firstRoot, TestHelper.getNode("firstChild"));
+
+        var secondRoot = TestHelper.getNode("secondRoot");
+        secondRoot.setTreeId(2L);
+        scopedDao.insertAsRoot(secondRoot);
+
+        var output = new ByteArrayOutputStream();
+        assertEquals(2, NestedSetSnapshot.export(scopedDao, 1L, Channels.newChannel(output), CATEGORY.NAME));
+
+        scopedDao.ctx().deleteFrom(CATEGORY).where(CATEGORY.TREE_ID.eq(1L)).execute();
+
+        var input = new ByteArrayInputStream(output.toByteArray());
+        assertEquals(2, NestedSetSnapshot.load(scopedDao, 3L, Channels.newChannel(input)));
+
+        List<CategoryNode> result = scopedDao.findAll();
+        assertEquals(3, result.size());
+        assertTrue(TestHelper.contains(result, "firstRoot", 1, 4, 0));
+        assertTrue(TestHelper.contains(result, "firstChild", 2, 3, 1));
+        assertEquals(3L, TestHelper.getByName(result, "firstChild").getTreeId());
+        assertEquals(1, scopedDao.getChildren(TestHelper.getByName(result, "firstRoot")).size());
+    }
+
+    @Test
+    public void exportAndLoadMultipleBlocks() {
+        // more nodes than fit into a block, with IDs in random order
+        var nodes = new ArrayList<CategoryNode>();
+        for (int i = 0; i < 1500; i++) {
+            var node = TestHelper.getNode("node" + i);
+            node.setId((i * 7919L) % 3001 + 1);
+            node.setParentId(i == 0 ? null : nodes.get((i - 1) / 3).getId());
+            nodes.add(node);
+        }
+        dao.insert(nodes);
+        dao.rebuild(CATEGORY.PARENT_ID, CATEGORY.ID);
+
+        var expected = dao.findAll();
+        var output = new ByteArrayOutputStream();
+        assertEquals(1500, NestedSetSnapshot.export(dao, Channels.newChannel(output), CATEGORY.NAME,
+                CATEGORY.PARENT_ID));
+
+        dao.ctx().deleteFrom(CATEGORY).execute();
+
+        var input = new ByteArrayInputStream(output.toByteArray());
+        assertEquals(1500, NestedSetSnapshot.load(dao, Channels.newChannel(input)));
+        assertEquals(expected, dao.findAll());
+    }
+
+    @Test
+    public void loadSnapshotWithGaps() {
+        var softDeleteDao = new CategoryNestedSetDao(dao.configuration()) {
+            @Override
+            public TableField<CategoryRecord, Boolean> getDeletedField() {
+                return CATEGORY.DELETED;
+            }
+        };
+
+        var root = TestHelper.getNode("rootNode");
+        softDeleteDao.insertAsRoot(root);
+        var child1 = TestHelper.getNode("firstChild");
+        softDeleteDao.insertAsLastChild(root, child1);
+        softDeleteDao.insertAsLastChild(child1, TestHelper.getNode("firstGrandchild"));
+        softDeleteDao.insertAsLastChild(root, TestHelper.getNode("secondChild"));
+        softDeleteDao.delete(child1);
+
+        var output = new ByteArrayOutputStream();
+        assertEquals(2, NestedSetSnapshot.export(softDeleteDao, Channels.newChannel(output), CATEGORY.NAME));
+
+        dao.ctx().deleteFrom(CATEGORY).execute();
+
+        // the densely numbered dao would calculate wrong counts from the gaps, so the import is rolled back
+        var dense = new ByteArrayInputStream(output.toByteArray());
+        assertThrows(IllegalArgumentException.class, () -> NestedSetSnapshot.load(dao, Channels.newChannel(dense)));
+        assertTrue(dao.findAll().isEmpty());
+
+        var gapped = new ByteArrayInputStream(output.toByteArray());
+        assertEquals(2, NestedSetSnapshot.load(softDeleteDao, Channels.newChannel(gapped)));
+
+        var result = softDeleteDao.findAll();
+        assertTrue(TestHelper.contains(result, "rootNode", 1, 8, 0));
+        assertTrue(TestHelper.contains(result, "secondChild", 6, 7, 1));
+        assertEquals(1, softDeleteDao.countDescendants(TestHelper.getByName(result, "rootNode")));
+    }
+
+    @Test
+    public void rejectInvalidSnapshot() {
+        var input = new ByteArrayInputStream(new byte[]{'N', 'O', 'P', 'E'});
+        assertThrows(IllegalArgumentException.class, () -> NestedSetSnapshot.load(dao, Channels.newChannel(input)));
+    }
+}
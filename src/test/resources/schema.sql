@@ -1,7 +1,13 @@
 CREATE TABLE "PUBLIC"."CATEGORY"(
     "ID" BIGINT auto_increment NOT NULL PRIMARY KEY,
     "NAME" VARCHAR(255) NOT NULL,
+    "PARENT_ID" BIGINT,
+    "TREE_ID" BIGINT,
     "LFT" BIGINT,
     "RGT" BIGINT,
-    "LEVEL" BIGINT
-);
\ No newline at end of file
+    "LEVEL" BIGINT,
+    "DELETED" BOOLEAN,
+    "VERSION" BIGINT
+);
+CREATE INDEX "CATEGORY_LFT_RGT" ON "PUBLIC"."CATEGORY"("LFT", "RGT");
+CREATE INDEX "CATEGORY_LEVEL_LFT" ON "PUBLIC"."CATEGORY"("LEVEL", "LFT");